@@ -0,0 +1,117 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.bio.BioDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pathvisio.core.model.ConverterException;
+
+/**
+ * Converting a synthetic corpus to MITAB on the {@link ConversionEngine},
+ * from parsing to the written rows. The mapping cache starts empty for every
+ * iteration, as it does for a real run.
+ *
+ * @author anwesha
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	@Param({ "200" })
+	int pathways;
+
+	@Param({ "100" })
+	int nodes;
+
+	@Param({ "1", "4" })
+	int threads;
+
+	private File dir;
+	private List<File> files;
+	private ConversionEngine engine;
+	private Interactions interactions;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BioDataSource.init();
+		dir = SyntheticGpml.tempDir("corpus");
+		files = new SyntheticGpml(nodes, nodes, nodes / 20, 4).writeCorpus(
+				dir, pathways);
+		engine = new ConversionEngine(threads, false, false);
+		interactions = new Interactions();
+	}
+
+	@Setup(Level.Iteration)
+	public void clearCache() {
+		Interactions.mappingCache = new MappingCache(new SyntheticIDMapper(3),
+				MappingCache.defaultSize());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SyntheticGpml.delete(dir);
+	}
+
+	@Benchmark
+	public void convert(final Blackhole blackhole) throws ConverterException {
+		engine.run(files, new ConversionEngine.PathwayTask<String>() {
+			@Override
+			public String convert(PathwayContext ctx)
+					throws ConverterException {
+				StringWriter out = new StringWriter();
+				MitabWriter writer = new MitabWriter(out,
+						MitabWriter.defaultVersion());
+				try {
+					interactions.convertPathway(ctx, writer);
+					writer.flush();
+				} catch (IOException e) {
+					throw new ConverterException(e);
+				}
+				return out.toString();
+			}
+		}, new ConversionEngine.ResultHandler<String>() {
+			@Override
+			public void handle(String rows) {
+				blackhole.consume(rows);
+			}
+		});
+	}
+}
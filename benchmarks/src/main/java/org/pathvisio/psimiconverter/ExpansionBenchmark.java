@@ -0,0 +1,85 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.bridgedb.bio.BioDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Expanding one complex into MITAB rows, for complexes of different sizes.
+ * The rows are formatted by a {@link MitabWriter} into a discarding writer,
+ * so the cost of writing a row is included.
+ *
+ * @author anwesha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionBenchmark {
+
+	@Param({ "SPOKE", "MATRIX", "NARY" })
+	ComplexExpansion expansion;
+
+	@Param({ "2", "8", "32", "128" })
+	int members;
+
+	private List<Participant> complex;
+	private MitabWriter writer;
+
+	@Setup
+	public void setUp() {
+		BioDataSource.init();
+		DataSource ensembl = DataSource.getBySystemCode("En");
+		DataSource entrez = DataSource.getBySystemCode("L");
+		complex = new ArrayList<Participant>(members);
+		for (int i = 0; i < members; i++) {
+			complex.add(new Participant("member" + i, "GeneProduct", new Xref(
+					String.format("ENSG%011d", i), ensembl), new Xref(
+							String.valueOf(i), entrez)));
+		}
+		writer = new MitabWriter(new NullWriter(),
+				MitabWriter.Version.MITAB27);
+	}
+
+	@Benchmark
+	public long expand() throws IOException {
+		expansion.write("Synthetic pathway", "Homo sapiens", "complex",
+				complex, writer);
+		return writer.getRowCount();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.bridgedb.bio.BioDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Identifier mapping through the {@link MappingCache} against a synthetic
+ * bridge database, one Xref per call and in bulk. A cache smaller than the
+ * id range measures the misses, a large one the hits.
+ *
+ * @author anwesha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+	@Param({ "16", "100000" })
+	int cacheSize;
+
+	@Param({ "100" })
+	int batchSize;
+
+	private MappingCache cache;
+	private DataSource ensembl;
+	private List<Xref> refs;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BioDataSource.init();
+		ensembl = DataSource.getBySystemCode("En");
+		DataSource entrez = DataSource.getBySystemCode("L");
+		refs = new ArrayList<Xref>(SyntheticGpml.ID_RANGE);
+		for (int i = 1; i <= SyntheticGpml.ID_RANGE; i++) {
+			refs.add(new Xref(String.valueOf(i), entrez));
+		}
+		cache = new MappingCache(new SyntheticIDMapper(3), cacheSize);
+	}
+
+	@Benchmark
+	public Set<Xref> mapSingle() throws IDMapperException {
+		Xref ref = refs.get(next);
+		next = (next + 1) % refs.size();
+		return cache.mapID(ref, ensembl);
+	}
+
+	/**
+	 * Throughput is in batches, multiply by the batch size for Xrefs.
+	 */
+	@Benchmark
+	public Map<Xref, Set<Xref>> mapBulk() throws IDMapperException {
+		int from = next;
+		next = (next + batchSize) % (refs.size() - batchSize);
+		return cache.mapID(refs.subList(from, from + batchSize), ensembl);
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.Writer;
+
+/**
+ * A Writer that only counts what it is given.
+ *
+ * @author anwesha
+ *
+ */
+class NullWriter extends Writer {
+
+	private long written;
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		written += len;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	long getWritten() {
+		return written;
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.bio.BioDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pathvisio.core.model.ConverterException;
+
+/**
+ * Reading one pathway file, with the StAX extraction reader and with the
+ * full PathVisio parser.
+ *
+ * @author anwesha
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ "50", "500", "5000" })
+	int nodes;
+
+	@Param({ "stax", "pathvisio", "pathvisio-validate" })
+	String parser;
+
+	private File dir;
+	private File file;
+	private ConversionEngine engine;
+
+	@Setup
+	public void setUp() throws Exception {
+		BioDataSource.init();
+		dir = SyntheticGpml.tempDir("parse");
+		file = new File(dir, "pathway.gpml");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			new SyntheticGpml(nodes, nodes, nodes / 20, 4).write(0, out);
+		} finally {
+			out.close();
+		}
+		engine = new ConversionEngine(1, "pathvisio-validate".equals(parser),
+				!"stax".equals(parser));
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticGpml.delete(dir);
+	}
+
+	@Benchmark
+	public PathwayContext parse() throws ConverterException {
+		return engine.read(file);
+	}
+}
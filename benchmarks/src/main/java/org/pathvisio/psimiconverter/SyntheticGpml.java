@@ -0,0 +1,174 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates GPML pathways of a given size, so that the benchmarks do not
+ * need a WikiPathways download.
+ * <p>
+ * Data nodes are a mix of gene products (Entrez Gene), proteins (UniProt)
+ * and metabolites (ChEBI); ids are drawn from a fixed range so that the same
+ * Xrefs come back across pathways, as they do in the real corpus.
+ *
+ * @author anwesha
+ *
+ */
+public class SyntheticGpml {
+
+	/* distinct ids per database, shared by all generated pathways */
+	static final int ID_RANGE = 20000;
+
+	private final int nodes;
+	private final int interactions;
+	private final int complexes;
+	private final int complexSize;
+
+	/**
+	 * @param nodes
+	 *            data nodes per pathway, the complex members included
+	 * @param interactions
+	 *            interactions per pathway
+	 * @param complexes
+	 *            complexes per pathway
+	 * @param complexSize
+	 *            members per complex
+	 */
+	public SyntheticGpml(int nodes, int interactions, int complexes,
+			int complexSize) {
+		this.nodes = nodes;
+		this.interactions = interactions;
+		this.complexes = complexes;
+		this.complexSize = complexSize;
+	}
+
+	/**
+	 * Writes pathway number <code>index</code>; the same index always gives
+	 * the same pathway.
+	 */
+	public void write(int index, Writer out) throws IOException {
+		Random random = new Random(index);
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.write("<Pathway xmlns=\"http://pathvisio.org/GPML/2013a\" Name=\"Synthetic pathway "
+				+ index + "\" Organism=\"Homo sapiens\">\n");
+		int grouped = Math.min(nodes, complexes * complexSize);
+		for (int i = 0; i < nodes; i++) {
+			String groupRef = i < grouped ? " GroupRef=\"g" + i / complexSize
+					+ "\"" : "";
+			int id = random.nextInt(ID_RANGE) + 1;
+			String type;
+			String database;
+			String elementId;
+			switch (i % 4) {
+			case 0:
+				type = "Protein";
+				database = "Uniprot-TrEMBL";
+				elementId = "P" + id;
+				break;
+			case 1:
+				type = "Metabolite";
+				database = "ChEBI";
+				elementId = "CHEBI:" + id;
+				break;
+			default:
+				type = "GeneProduct";
+				database = "Entrez Gene";
+				elementId = String.valueOf(id);
+				break;
+			}
+			out.write("  <DataNode TextLabel=\"node" + i + "\" GraphId=\"n" + i
+					+ "\" Type=\"" + type + "\"" + groupRef + ">\n");
+			out.write("    <Graphics CenterX=\"" + (i % 40) * 60
+					+ "\" CenterY=\"" + i / 40 * 30
+					+ "\" Width=\"50\" Height=\"20\" ZOrder=\"32768\""
+					+ " FontSize=\"10\" Valign=\"Middle\"/>\n");
+			out.write("    <Xref Database=\"" + database + "\" ID=\""
+					+ elementId + "\"/>\n");
+			out.write("  </DataNode>\n");
+		}
+		for (int i = 0; i < interactions && nodes > 1; i++) {
+			int start = random.nextInt(nodes);
+			int end = (start + 1 + random.nextInt(nodes - 1)) % nodes;
+			out.write("  <Interaction GraphId=\"i" + i + "\">\n");
+			out.write("    <Graphics ZOrder=\"12288\" LineThickness=\"1.0\">\n");
+			out.write("      <Point X=\"0\" Y=\"0\" GraphRef=\"n" + start
+					+ "\" RelX=\"1.0\" RelY=\"0.0\"/>\n");
+			out.write("      <Point X=\"10\" Y=\"10\" GraphRef=\"n" + end
+					+ "\" RelX=\"-1.0\" RelY=\"0.0\" ArrowHead=\"Arrow\"/>\n");
+			out.write("      <Anchor Position=\"0.5\" Shape=\"None\" GraphId=\"a"
+					+ i + "\"/>\n");
+			out.write("    </Graphics>\n");
+			out.write("    <Xref Database=\"\" ID=\"\"/>\n");
+			out.write("  </Interaction>\n");
+		}
+		for (int i = 0; i < complexes && i * complexSize < nodes; i++) {
+			out.write("  <Group GroupId=\"g" + i + "\" GraphId=\"c" + i
+					+ "\" Style=\"Complex\"/>\n");
+		}
+		out.write("  <InfoBox CenterX=\"0.0\" CenterY=\"0.0\"/>\n");
+		out.write("  <Biopax/>\n");
+		out.write("</Pathway>\n");
+	}
+
+	/**
+	 * Writes <code>count</code> pathways into the directory.
+	 */
+	public List<File> writeCorpus(File dir, int count) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create " + dir);
+		}
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			File file = new File(dir, String.format("WP%05d.gpml", i));
+			Writer out = new OutputStreamWriter(new FileOutputStream(file),
+					"UTF-8");
+			try {
+				write(i, out);
+			} finally {
+				out.close();
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+	static File tempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Can't create " + dir);
+		}
+		return dir;
+	}
+
+	static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * A small in-memory bridge database: every gene product and protein id maps
+ * to one Ensembl gene, every ChEBI id to one HMDB id and every Ensembl gene
+ * to a few GO terms. The mappings are computed from the id, so any id of
+ * {@link SyntheticGpml} resolves.
+ *
+ * @author anwesha
+ *
+ */
+public class SyntheticIDMapper implements IDMapper {
+
+	private final int goTermsPerGene;
+	private volatile boolean closed;
+
+	public SyntheticIDMapper(int goTermsPerGene) {
+		this.goTermsPerGene = goTermsPerGene;
+	}
+
+	@Override
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs,
+			DataSource... tgtDataSources) throws IDMapperException {
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		for (Xref ref : srcXrefs) {
+			result.put(ref, mapID(ref, tgtDataSources));
+		}
+		return result;
+	}
+
+	@Override
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources)
+			throws IDMapperException {
+		Set<Xref> result = new HashSet<Xref>();
+		String src = ref.getDataSource() == null ? null : ref.getDataSource()
+				.getSystemCode();
+		String number = ref.getId().replaceAll("\\D", "");
+		if (src == null || number.isEmpty()) {
+			return result;
+		}
+		for (DataSource tgt : tgtDataSources) {
+			String code = tgt.getSystemCode();
+			if ("En".equals(code) && ("L".equals(src) || "S".equals(src))) {
+				result.add(new Xref(String.format("ENSG%011d",
+						Long.parseLong(number)), tgt));
+			} else if ("Ch".equals(code) && "Ce".equals(src)) {
+				result.add(new Xref(String.format("HMDB%05d",
+						Long.parseLong(number)), tgt));
+			} else if ("T".equals(code) && "En".equals(src)) {
+				long gene = Long.parseLong(number);
+				for (int i = 0; i < goTermsPerGene; i++) {
+					result.add(new Xref(String.format("GO:%07d",
+							(gene * 31 + i) % 50000), tgt));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return true;
+	}
+
+	@Override
+	public Set<Xref> freeSearch(String text, int limit)
+			throws IDMapperException {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public IDMapperCapabilities getCapabilities() {
+		return null;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return !closed;
+	}
+
+	@Override
+	public void close() throws IDMapperException {
+		closed = true;
+	}
+}
@@ -17,6 +17,7 @@ package org.pathvisio.psimiconverter;
 
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.pathvisio.desktop.plugin.Plugin;
 
 
 /**
@@ -28,10 +29,17 @@ public class Activator implements BundleActivator {
 	@Override
 	public void start(BundleContext context) throws Exception {
 
-		//		PsimiPlugin plugin = new PsimiPlugin();
-		// context.registerService(PsimiPlugin.class.getName(), plugin, null);
+		PsimiPlugin psimiPlugin = new PsimiPlugin();
+		context.registerService(PsimiPlugin.class.getName(), psimiPlugin, null);
 		Interactions plugin = new Interactions();
 		context.registerService(Interactions.class.getName(), plugin, null);
+		/* adds the exporters to the editor's export dialog */
+		context.registerService(Plugin.class.getName(),
+				new PsimiDesktopPlugin(), null);
+		/* the conversion metrics, also in JMX when they are switched on */
+		context.registerService(MetricsMXBean.class.getName(), Metrics.get(),
+				null);
+		Metrics.register();
 
 	}
 
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import org.bridgedb.IDMapperStack;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayExporter;
+import org.pathvisio.core.util.ProgressKeeper;
+import org.pathvisio.desktop.PvDesktop;
+import org.pathvisio.gui.ProgressDialog;
+
+/**
+ * Runs an export from the PathVisio editor on a background thread, with a
+ * progress dialog that can cancel it. Identifiers are mapped with the
+ * databases PathVisio has loaded. A cancelled export leaves no file and is
+ * reported as a ConverterException.
+ *
+ * @author anwesha
+ *
+ */
+public class BackgroundExporter implements PathwayExporter {
+
+	private final PvDesktop desktop;
+	private final PathwayContextExporter exporter;
+
+	public BackgroundExporter(PvDesktop desktop,
+			PathwayContextExporter exporter) {
+		this.desktop = desktop;
+		this.exporter = exporter;
+	}
+
+	@Override
+	public String getName() {
+		return exporter.getName();
+	}
+
+	@Override
+	public String[] getExtensions() {
+		return exporter.getExtensions();
+	}
+
+	@Override
+	public List<String> getWarnings() {
+		return exporter.getWarnings();
+	}
+
+	@Override
+	public void doExport(final File file, Pathway pathway)
+			throws ConverterException {
+		/* copied on the calling thread, the editor may change the pathway */
+		final PathwayContext ctx = PathwayContext.fromPathway(pathway);
+		IDMapperStack gdbs = desktop.getSwingEngine().getGdbManager()
+				.getCurrentGdb();
+		if (gdbs != null && gdbs.getSize() > 0) {
+			ctx.mappingCache = new MappingCache(gdbs,
+					MappingCache.defaultSize());
+		}
+		final ProgressKeeper pk = new ProgressKeeper(ctx.elements.size());
+		if (!SwingUtilities.isEventDispatchThread()) {
+			exporter.doExport(file, ctx, pk);
+			return;
+		}
+		SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground() throws ConverterException {
+				try {
+					exporter.doExport(file, ctx, pk);
+				} finally {
+					pk.finished();
+				}
+				return null;
+			}
+		};
+		ProgressDialog dialog = new ProgressDialog(desktop.getFrame(),
+				"Exporting " + exporter.getName(), pk, true, true);
+		worker.execute();
+		/* modal, keeps the editor painting until the export is finished */
+		dialog.setVisible(true);
+		try {
+			worker.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConverterException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CancellationException) {
+				/* the exporter has deleted what it wrote */
+				throw new ConverterException("Export cancelled, "
+						+ file.getName() + " was not written");
+			}
+			if (cause instanceof ConverterException) {
+				throw (ConverterException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ConverterException((Exception) cause);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the interactions as a binary network that graph tools can map
+ * into memory instead of parsing MITAB. All numbers are little endian and
+ * every section starts at a multiple of 8 bytes.
+ *
+ * <pre>
+ * header, 128 bytes
+ *   0  "PSINET01"
+ *   8  int32 version (1), int32 header size (128)
+ *   16 int64 nodes N, edges E, pathways, interaction types
+ *   48 int64 offsets of the sections below, in this order
+ * edge columns, in pathway order
+ *   int32[E] source node, int32[E] target node,
+ *   int32[E] interaction type, int32[E] pathway
+ * adjacency of the source nodes (CSR)
+ *   int64[N + 1] start of the edges of node n in the next two arrays
+ *   int32[E] target node, int32[E] edge index in the edge columns
+ * string tables of the node Xrefs (system code:id), the pathway names and
+ * the interaction types (MI:0000(name))
+ *   int64[count + 1] start of string i in the UTF-8 bytes that follow
+ * </pre>
+ *
+ * Edges are spooled to a temporary file while the pathways come in; only
+ * the dictionaries and, on {@link #close()}, the adjacency arrays are held
+ * in memory. Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class BinaryNetworkWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 128;
+
+	private final File file;
+	private final StringDictionary nodes = new StringDictionary();
+	private final StringDictionary pathways = new StringDictionary();
+	private final StringDictionary types = new StringDictionary();
+	private final File spoolFile;
+	private final DataOutputStream spool;
+	private int edges;
+
+	public BinaryNetworkWriter(File file) throws IOException {
+		this.file = file;
+		this.spoolFile = File.createTempFile("psimi-edges", ".bin");
+		this.spoolFile.deleteOnExit();
+		this.spool = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(spoolFile)));
+	}
+
+	public void addEdge(String pathway, String source, String target,
+			String type) throws IOException {
+		spool.writeInt(nodes.encode(source));
+		spool.writeInt(nodes.encode(target));
+		spool.writeInt(types.encode(type));
+		spool.writeInt(pathways.encode(pathway));
+		edges++;
+	}
+
+	/**
+	 * Adds the lines of an {@link EdgeList}.
+	 */
+	public void addEdges(String lines) throws IOException {
+		int start = 0;
+		while (start < lines.length()) {
+			int end = lines.indexOf('\n', start);
+			if (end < 0) {
+				end = lines.length();
+			}
+			int tab1 = lines.indexOf('\t', start);
+			int tab2 = lines.indexOf('\t', tab1 + 1);
+			int tab3 = lines.indexOf('\t', tab2 + 1);
+			addEdge(lines.substring(start, tab1), lines.substring(tab1 + 1,
+					tab2), lines.substring(tab2 + 1, tab3), lines.substring(
+							tab3 + 1, end));
+			start = end + 1;
+		}
+	}
+
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	public int getEdgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Builds the adjacency and writes the file.
+	 */
+	public void close() throws IOException {
+		spool.close();
+		try {
+			write();
+		} finally {
+			spoolFile.delete();
+		}
+	}
+
+	private void write() throws IOException {
+		int n = nodes.size();
+		/* the adjacency, by counting sort of the edges on their source */
+		long[] starts = new long[n + 1];
+		int[] targets = new int[edges];
+		int[] edgeIds = new int[edges];
+		DataInputStream in = openSpool();
+		try {
+			for (int e = 0; e < edges; e++) {
+				starts[in.readInt() + 1]++;
+				in.skipBytes(12);
+			}
+		} finally {
+			in.close();
+		}
+		for (int i = 0; i < n; i++) {
+			starts[i + 1] += starts[i];
+		}
+		int[] fill = new int[n];
+		in = openSpool();
+		try {
+			for (int e = 0; e < edges; e++) {
+				int source = in.readInt();
+				int slot = (int) starts[source] + fill[source]++;
+				targets[slot] = in.readInt();
+				edgeIds[slot] = e;
+				in.skipBytes(8);
+			}
+		} finally {
+			in.close();
+		}
+		fill = null;
+
+		long[] offsets = new long[10];
+		long pos = HEADER_SIZE;
+		long column = align(4L * edges);
+		for (int i = 0; i < 4; i++) {
+			offsets[i] = pos;
+			pos += column;
+		}
+		offsets[4] = pos;
+		pos += 8L * (n + 1);
+		offsets[5] = pos;
+		pos += column;
+		offsets[6] = pos;
+		pos += column;
+		StringDictionary[] tables = { nodes, pathways, types };
+		for (int t = 0; t < tables.length; t++) {
+			offsets[7 + t] = pos;
+			pos += tableSize(tables[t]);
+		}
+
+		Output out = new Output(file);
+		try {
+			out.putBytes("PSINET01".getBytes(UTF8));
+			out.putInt(VERSION);
+			out.putInt(HEADER_SIZE);
+			out.putLong(n);
+			out.putLong(edges);
+			out.putLong(pathways.size());
+			out.putLong(types.size());
+			for (long offset : offsets) {
+				out.putLong(offset);
+			}
+			out.align();
+			/* the columns, one pass over the spool each */
+			for (int c = 0; c < 4; c++) {
+				in = openSpool();
+				try {
+					for (int e = 0; e < edges; e++) {
+						in.skipBytes(4 * c);
+						out.putInt(in.readInt());
+						in.skipBytes(12 - 4 * c);
+					}
+				} finally {
+					in.close();
+				}
+				out.align();
+			}
+			for (long start : starts) {
+				out.putLong(start);
+			}
+			for (int target : targets) {
+				out.putInt(target);
+			}
+			out.align();
+			for (int edge : edgeIds) {
+				out.putInt(edge);
+			}
+			out.align();
+			for (StringDictionary table : tables) {
+				writeTable(out, table);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private DataInputStream openSpool() throws IOException {
+		return new DataInputStream(new BufferedInputStream(
+				new FileInputStream(spoolFile), 65536));
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	private static long tableSize(StringDictionary table) {
+		long bytes = 0;
+		for (int i = 0; i < table.size(); i++) {
+			bytes += table.decode(i).getBytes(UTF8).length;
+		}
+		return 8L * (table.size() + 1) + align(bytes);
+	}
+
+	private static void writeTable(Output out, StringDictionary table)
+			throws IOException {
+		long start = 0;
+		out.putLong(start);
+		for (int i = 0; i < table.size(); i++) {
+			start += table.decode(i).getBytes(UTF8).length;
+			out.putLong(start);
+		}
+		for (int i = 0; i < table.size(); i++) {
+			out.putBytes(table.decode(i).getBytes(UTF8));
+		}
+		out.align();
+	}
+
+	/**
+	 * Little endian output through a channel.
+	 */
+	private static class Output {
+		private final FileOutputStream stream;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(65536).order(
+				ByteOrder.LITTLE_ENDIAN);
+		private long position;
+
+		Output(File file) throws IOException {
+			stream = new FileOutputStream(file);
+			channel = stream.getChannel();
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+			position += 4;
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+			position += 8;
+		}
+
+		void putBytes(byte[] bytes) throws IOException {
+			for (int i = 0; i < bytes.length;) {
+				ensure(1);
+				int n = Math.min(bytes.length - i, buffer.remaining());
+				buffer.put(bytes, i, n);
+				i += n;
+			}
+			position += bytes.length;
+		}
+
+		void align() throws IOException {
+			while (position % 8 != 0) {
+				ensure(1);
+				buffer.put((byte) 0);
+				position++;
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				stream.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bridgedb.BridgeDb;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+
+/**
+ * Opens bridge databases and reports how long each one took.
+ *
+ * @author anwesha
+ *
+ */
+public class BridgeFiles {
+
+	private static boolean driverLoaded;
+
+	private BridgeFiles() {
+	}
+
+	/**
+	 * Number of databases opened at the same time, set with the
+	 * <code>psimi.bridge.threads</code> system property.
+	 */
+	public static int defaultThreads() {
+		return Integer.getInteger("psimi.bridge.threads",
+				ConversionEngine.defaultThreads());
+	}
+
+	/**
+	 * True if bridge databases are only opened when first queried, set with
+	 * the <code>psimi.bridge.lazy</code> system property.
+	 */
+	public static boolean defaultLazy() {
+		return Boolean.getBoolean("psimi.bridge.lazy");
+	}
+
+	/**
+	 * Registers the BridgeDb driver for bridge files, once.
+	 */
+	private static synchronized void loadDriver() throws IDMapperException {
+		if (!driverLoaded) {
+			try {
+				Class.forName("org.bridgedb.rdb.IDMapperRdb");
+			} catch (ClassNotFoundException e) {
+				throw new IDMapperException(e);
+			}
+			driverLoaded = true;
+		}
+	}
+
+	public static IDMapper open(File dbFile) throws IDMapperException {
+		loadDriver();
+		long start = System.nanoTime();
+		IDMapper gdb = BridgeDb.connect("idmapper-pgdb:" + dbFile);
+		System.out.println("Bridge file: " + dbFile.getName() + " opened in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+		return gdb;
+	}
+
+	/**
+	 * Opens the databases on a few threads. The result is in the order of
+	 * the files; databases that fail to open are reported and left out.
+	 */
+	public static Map<File, IDMapper> openAll(List<File> dbFiles, int threads) {
+		Map<File, IDMapper> result = new LinkedHashMap<File, IDMapper>();
+		if (dbFiles.isEmpty()) {
+			return result;
+		}
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				Math.min(threads, dbFiles.size())));
+		try {
+			List<Future<IDMapper>> opening = new ArrayList<Future<IDMapper>>();
+			for (final File dbFile : dbFiles) {
+				opening.add(pool.submit(new Callable<IDMapper>() {
+					@Override
+					public IDMapper call() throws IDMapperException {
+						return open(dbFile);
+					}
+				}));
+			}
+			for (int i = 0; i < opening.size(); i++) {
+				try {
+					result.put(dbFiles.get(i), opening.get(i).get());
+				} catch (ExecutionException e) {
+					System.out.println("Bridge file: "
+							+ dbFiles.get(i).getName() + " failed to open");
+					e.getCause().printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.println(result.size() + " bridge files opened in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+		return result;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bridgedb.Xref;
+
+/**
+ * Ways to turn the members of a complex into interaction rows. Members that
+ * map to the same Xref are written once, and no pair is written twice.
+ *
+ * @author anwesha
+ *
+ */
+public enum ComplexExpansion {
+
+	/**
+	 * The first member is the bait, one row per other member: n - 1 rows.
+	 */
+	SPOKE {
+		@Override
+		void expand(String pathwayName, String organism, String complexId,
+				List<Participant> members, InteractionSink sink)
+						throws IOException {
+			Participant bait = members.get(0);
+			for (int i = 1; i < members.size(); i++) {
+				sink.writeInteraction(pathwayName, organism, bait,
+						members.get(i), MiTerms.COVALENT_BINDING,
+						MiTerms.SPOKE_EXPANSION, complexId, null);
+			}
+		}
+	},
+
+	/**
+	 * One row per unordered pair of members: n (n - 1) / 2 rows.
+	 */
+	MATRIX {
+		@Override
+		void expand(String pathwayName, String organism, String complexId,
+				List<Participant> members, InteractionSink sink)
+						throws IOException {
+			for (int i = 0; i < members.size(); i++) {
+				for (int j = i + 1; j < members.size(); j++) {
+					sink.writeInteraction(pathwayName, organism,
+							members.get(i), members.get(j),
+							MiTerms.COVALENT_BINDING, MiTerms.MATRIX_EXPANSION,
+							complexId, null);
+				}
+			}
+		}
+	},
+
+	/**
+	 * The complex as a single n-ary interaction, one row per member with an
+	 * empty interactor B, all sharing the complex id: n rows.
+	 */
+	NARY {
+		@Override
+		void expand(String pathwayName, String organism, String complexId,
+				List<Participant> members, InteractionSink sink)
+						throws IOException {
+			for (Participant member : members) {
+				sink.writeInteraction(pathwayName, organism, member, null,
+						MiTerms.COVALENT_BINDING, null, complexId, null);
+			}
+		}
+	};
+
+	abstract void expand(String pathwayName, String organism,
+			String complexId, List<Participant> members, InteractionSink sink)
+					throws IOException;
+
+	/**
+	 * Writes the rows of a complex. Complexes with fewer than two distinct
+	 * members are skipped.
+	 */
+	public void write(String pathwayName, String organism, String complexId,
+			List<Participant> members, InteractionSink sink)
+					throws IOException {
+		List<Participant> distinct = distinct(members);
+		if (distinct.size() > 1) {
+			expand(pathwayName, organism, complexId, distinct, sink);
+		}
+	}
+
+	private static List<Participant> distinct(List<Participant> members) {
+		Map<Xref, Participant> byRef = new LinkedHashMap<Xref, Participant>();
+		for (Participant member : members) {
+			if (!byRef.containsKey(member.ref)) {
+				byRef.put(member.ref, member);
+			}
+		}
+		return new ArrayList<Participant>(byRef.values());
+	}
+
+	/**
+	 * Expansion set with the <code>psimi.expansion</code> system property,
+	 * "spoke", "matrix" (the default) or "nary".
+	 */
+	public static ComplexExpansion defaultExpansion() {
+		String name = System.getProperty("psimi.expansion", "matrix");
+		return valueOf(name.toUpperCase());
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.core.model.ObjectType;
+
+/**
+ * Members of the groups of a pathway, built in a single pass over its
+ * elements. Groups nested in a group, for instance a complex inside a
+ * complex, contribute their members to the outer group as well. A complex
+ * inside another complex is therefore not listed on its own, or its member
+ * pairs would be written twice.
+ *
+ * @author anwesha
+ *
+ */
+public class ComplexIndex {
+
+	/* groupRef -> data nodes directly in the group */
+	private final Map<String, List<Participant>> members = new HashMap<String, List<Participant>>();
+	/* groupRef -> ids of the groups directly in the group */
+	private final Map<String, List<String>> subgroups = new HashMap<String, List<String>>();
+	/* groupId -> groupRef of the group it is in */
+	private final Map<String, String> parents = new HashMap<String, String>();
+	/* ids of the complexes, in pathway order */
+	private final List<String> complexIds = new ArrayList<String>();
+	/* complex id -> its position in complexIds */
+	private final Map<String, Integer> complexes = new HashMap<String, Integer>();
+
+	public ComplexIndex(PathwayContext ctx) {
+		for (GpmlElement pwe : ctx.elements) {
+			if (pwe.getObjectType() == ObjectType.DATANODE
+					&& pwe.getGroupRef() != null
+					&& !(pwe.getElementID().isEmpty() || pwe.getDataSource() == null)) {
+				String db = pwe.getDataSource().getSystemCode();
+				add(members, pwe.getGroupRef(), new Participant(
+						pwe.getTextLabel(), pwe.getDataNodeType(),
+						Interactions.getPrefferedId(ctx, pwe.getDataNodeType(),
+								pwe.getElementID(), db), new Xref(
+										pwe.getElementID(),
+										DataSource.getBySystemCode(db))));
+			} else if (pwe.getObjectType() == ObjectType.GROUP
+					&& pwe.getGroupId() != null) {
+				if (pwe.isComplex() && !complexes.containsKey(pwe.getGroupId())) {
+					complexes.put(pwe.getGroupId(), complexIds.size());
+					complexIds.add(pwe.getGroupId());
+				}
+				if (pwe.getGroupRef() != null) {
+					add(subgroups, pwe.getGroupRef(), pwe.getGroupId());
+					parents.put(pwe.getGroupId(), pwe.getGroupRef());
+				}
+			}
+		}
+	}
+
+	private static <T> void add(Map<String, List<T>> map, String key, T value) {
+		List<T> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<T>();
+			map.put(key, list);
+		}
+		list.add(value);
+	}
+
+	/**
+	 * @return the ids of the complexes that are not inside another complex,
+	 *         in pathway order
+	 */
+	public List<String> getComplexIds() {
+		List<String> result = new ArrayList<String>();
+		for (String complexId : complexIds) {
+			if (!inComplex(complexId)) {
+				result.add(complexId);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @return true if one of the groups the complex is nested in is a
+	 *         complex. Of complexes nested in each other the first one in
+	 *         the pathway is the outermost.
+	 */
+	private boolean inComplex(String complexId) {
+		int index = complexes.get(complexId);
+		boolean nested = false;
+		boolean earlier = false;
+		Set<String> visited = new HashSet<String>();
+		for (String parent = parents.get(complexId); parent != null
+				&& visited.add(parent); parent = parents.get(parent)) {
+			if (parent.equals(complexId)) {
+				return earlier;
+			}
+			Integer position = complexes.get(parent);
+			if (position != null) {
+				nested = true;
+				earlier |= position < index;
+			}
+		}
+		return nested;
+	}
+
+	/**
+	 * @return the data nodes in the group and in the groups nested in it
+	 */
+	public List<Participant> getMembers(String groupId) {
+		List<Participant> result = new ArrayList<Participant>();
+		collect(groupId, result, new HashSet<String>());
+		return result;
+	}
+
+	private void collect(String groupId, List<Participant> result,
+			Set<String> visited) {
+		/* a group that (indirectly) contains itself is only visited once */
+		if (!visited.add(groupId)) {
+			return;
+		}
+		List<Participant> direct = members.get(groupId);
+		if (direct != null) {
+			result.addAll(direct);
+		}
+		List<String> nested = subgroups.get(groupId);
+		if (nested != null) {
+			for (String child : nested) {
+				collect(child, result, visited);
+			}
+		}
+	}
+}
@@ -0,0 +1,462 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.Pathway;
+
+/**
+ * Converts the pathways of a directory or a {@link PathwayArchive} in three
+ * stages: a pool of threads parses the files, a second pool runs the task,
+ * which does the identifier mapping, and the calling thread serializes the
+ * results. Every pathway is parsed and handled in its own
+ * {@link PathwayContext}; the results are handed back in file name order so
+ * that the merged output does not depend on which worker finished first.
+ * <p>
+ * A parsed pathway goes straight to the queue of the mapping stage, so
+ * parsing goes on while the mapping threads wait for the databases. At most
+ * a fixed number of pathways are between reading and serializing; when the
+ * serializer falls behind no new files are read, so the queues of all
+ * stages stay bounded. Their depths are shown by {@link Metrics}.
+ *
+ * @author anwesha
+ *
+ */
+public class ConversionEngine {
+
+	/**
+	 * The work done for one pathway. Implementations must only touch the
+	 * context they are given.
+	 */
+	public interface PathwayTask<T> {
+		T convert(PathwayContext context) throws ConverterException;
+	}
+
+	private final int parseThreads;
+	private final int mapThreads;
+	private final int capacity;
+	private final boolean validate;
+	private final boolean pathVisioParser;
+	/* the stages of the running conversion, for the queue depths */
+	private volatile ThreadPoolExecutor parsing;
+	private volatile ThreadPoolExecutor mapping;
+	private final AtomicInteger converted = new AtomicInteger();
+	private volatile FailureHandler failureHandler;
+
+	/**
+	 * Engine configured with the <code>psimi.*</code> system properties:
+	 * <code>psimi.parse.threads</code> and <code>psimi.map.threads</code>
+	 * size the stages, both default to <code>psimi.threads</code>, and
+	 * <code>psimi.queue.size</code> is the number of pathways in flight.
+	 */
+	public ConversionEngine() {
+		this(Integer.getInteger("psimi.parse.threads", defaultThreads()),
+				Integer.getInteger("psimi.map.threads", defaultThreads()),
+				Integer.getInteger("psimi.queue.size", 0), Boolean
+				.getBoolean("psimi.validate"), "pathvisio".equals(System
+						.getProperty("psimi.parser")));
+	}
+
+	/**
+	 * Engine with the same number of parse and mapping threads.
+	 */
+	public ConversionEngine(int threads, boolean validate,
+			boolean pathVisioParser) {
+		this(threads, threads, 0, validate, pathVisioParser);
+	}
+
+	/**
+	 * @param validate
+	 *            validate every file against the GPML schema, which needs
+	 *            the full PathVisio parser
+	 * @param pathVisioParser
+	 *            build a PathVisio Pathway for every file instead of only
+	 *            extracting what the conversion uses with a
+	 *            {@link GpmlReader}
+	 * @param capacity
+	 *            pathways in flight, 4 per thread if not positive
+	 */
+	public ConversionEngine(int parseThreads, int mapThreads, int capacity,
+			boolean validate, boolean pathVisioParser) {
+		this.parseThreads = Math.max(1, parseThreads);
+		this.mapThreads = Math.max(1, mapThreads);
+		this.capacity = capacity > 0 ? capacity : 4 * Math.max(
+				this.parseThreads, this.mapThreads);
+		this.validate = validate;
+		this.pathVisioParser = pathVisioParser || validate;
+	}
+
+	/**
+	 * Number of workers configured with the <code>psimi.threads</code>
+	 * system property, defaults to the number of available cores.
+	 */
+	public static int defaultThreads() {
+		return Integer.getInteger("psimi.threads", Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Reads the parts of a pathway file the conversion uses.
+	 */
+	public PathwayContext read(File file) throws ConverterException {
+		if (!pathVisioParser) {
+			return GpmlReader.read(file);
+		}
+		Pathway pathway = new Pathway();
+		pathway.readFromXml(file, validate);
+		return PathwayContext.fromPathway(pathway);
+	}
+
+	/**
+	 * Same as {@link #read(File)} for a stream, which is not closed.
+	 */
+	public PathwayContext read(InputStream in) throws ConverterException {
+		if (!pathVisioParser) {
+			return GpmlReader.read(in);
+		}
+		Pathway pathway = new Pathway();
+		pathway.readFromXml(in, validate);
+		return PathwayContext.fromPathway(pathway);
+	}
+
+	/**
+	 * Lists the pathway files of a directory in a stable order.
+	 */
+	public static List<File> listPathways(File pathwayDir) {
+		File[] files = pathwayDir.listFiles();
+		if (files == null) {
+			return Collections.emptyList();
+		}
+		List<File> result = new ArrayList<File>();
+		for (File file : files) {
+			if (file.isFile()) {
+				result.add(file);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Runs the task for every pathway file and returns the results in the
+	 * same order as the files.
+	 */
+	public <T> List<T> run(List<File> files, final PathwayTask<T> task)
+			throws ConverterException {
+		final List<T> results = new ArrayList<T>(files.size());
+		run(files, task, new ResultHandler<T>() {
+			@Override
+			public void handle(T result) {
+				results.add(result);
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Receives the results of {@link ConversionEngine#run(List, PathwayTask,
+	 * ResultHandler)} one by one, in file order, on the calling thread. The
+	 * result is null for a pathway that failed and was passed to the
+	 * {@link FailureHandler}.
+	 */
+	public interface ResultHandler<T> {
+		void handle(T result) throws IOException;
+	}
+
+	/**
+	 * Receives the pathways that could not be read or converted, on the
+	 * calling thread.
+	 */
+	public interface FailureHandler {
+		void failed(String pathway, Exception cause) throws IOException;
+	}
+
+	/**
+	 * Lets runs go on past pathways that fail, which are passed to the
+	 * handler; without one the first failure ends the run.
+	 */
+	public void setFailureHandler(FailureHandler failureHandler) {
+		this.failureHandler = failureHandler;
+	}
+
+	/**
+	 * Hands out the readers of the pathways in order, on the calling thread.
+	 */
+	private interface Readers {
+		/**
+		 * @return the reader of the next pathway, null after the last one
+		 */
+		Callable<PathwayContext> next() throws IOException;
+
+		/**
+		 * @return the name of the pathway of the last reader
+		 */
+		String name();
+	}
+
+	/**
+	 * Runs the task for every pathway file and passes each result to the
+	 * handler as soon as the results of all earlier files are handled. Only a
+	 * few pathways per worker are in flight at any time, so memory use does
+	 * not grow with the number of files.
+	 */
+	public <T> void run(List<File> files, PathwayTask<T> task,
+			ResultHandler<T> handler) throws ConverterException {
+		final Iterator<File> pending = files.iterator();
+		run(new Readers() {
+			private File last;
+
+			@Override
+			public Callable<PathwayContext> next() {
+				if (!pending.hasNext()) {
+					return null;
+				}
+				final File file = pending.next();
+				last = file;
+				return new Callable<PathwayContext>() {
+					@Override
+					public PathwayContext call() throws ConverterException {
+						return read(file);
+					}
+				};
+			}
+
+			@Override
+			public String name() {
+				return last.getPath();
+			}
+		}, task, handler);
+	}
+
+	/**
+	 * Same as {@link #run(List, PathwayTask, ResultHandler)} for the GPML
+	 * files of an archive, in the order the archive hands them out.
+	 */
+	public <T> void run(final PathwayArchive archive, PathwayTask<T> task,
+			ResultHandler<T> handler) throws ConverterException {
+		run(new Readers() {
+			private PathwayArchive.Entry last;
+
+			@Override
+			public Callable<PathwayContext> next() throws IOException {
+				final PathwayArchive.Entry entry = archive.next();
+				if (entry == null) {
+					return null;
+				}
+				last = entry;
+				return new Callable<PathwayContext>() {
+					@Override
+					public PathwayContext call() throws IOException,
+					ConverterException {
+						InputStream in = entry.open();
+						try {
+							return read(in);
+						} finally {
+							in.close();
+						}
+					}
+				};
+			}
+
+			@Override
+			public String name() {
+				return last.getName();
+			}
+		}, task, handler);
+	}
+
+	private <T> void run(Readers readers, PathwayTask<T> task,
+			ResultHandler<T> handler) throws ConverterException {
+		/* the window below bounds the queues, they never reject */
+		ThreadPoolExecutor parsing = stage("parse", parseThreads);
+		ThreadPoolExecutor mapping = stage("map", mapThreads);
+		this.parsing = parsing;
+		this.mapping = mapping;
+		converted.set(0);
+		Metrics.watch(this);
+		try {
+			LinkedList<Future<T>> inFlight = new LinkedList<Future<T>>();
+			LinkedList<String> names = new LinkedList<String>();
+			Callable<PathwayContext> pending = readers.next();
+			while (pending != null || !inFlight.isEmpty()) {
+				while (pending != null && inFlight.size() < capacity) {
+					inFlight.add(submit(pending, task, parsing, mapping));
+					names.add(readers.name());
+					pending = readers.next();
+				}
+				Future<T> next = inFlight.removeFirst();
+				String name = names.removeFirst();
+				T result;
+				try {
+					result = next.get();
+				} catch (ExecutionException e) {
+					FailureHandler failures = failureHandler;
+					if (failures == null
+							|| !(e.getCause() instanceof Exception)) {
+						throw e;
+					}
+					failures.failed(name, (Exception) e.getCause());
+					result = null;
+				}
+				converted.decrementAndGet();
+				handler.handle(result);
+			}
+		} catch (IOException e) {
+			throw new ConverterException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConverterException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ConverterException) {
+				throw (ConverterException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ConverterException((Exception) cause);
+		} finally {
+			parsing.shutdownNow();
+			mapping.shutdownNow();
+			this.parsing = null;
+			this.mapping = null;
+		}
+	}
+
+	static ThreadPoolExecutor stage(final String name, int threads) {
+		return new ThreadPoolExecutor(threads, threads, 0,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "psimi-" + name + "-"
+						+ count.incrementAndGet());
+			}
+		});
+	}
+
+	/**
+	 * Queues the pathway for parsing; once parsed it is queued for the task.
+	 *
+	 * @return the result of the task
+	 */
+	private <T> Future<T> submit(final Callable<PathwayContext> reader,
+			final PathwayTask<T> task, ThreadPoolExecutor parsing,
+			final ThreadPoolExecutor mapping) {
+		final AtomicReference<Future<PathwayContext>> parsed = new AtomicReference<Future<PathwayContext>>();
+		final FutureTask<T> result = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				PathwayContext ctx;
+				try {
+					ctx = parsed.get().get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw (Error) e.getCause();
+				}
+				return task.convert(ctx);
+			}
+		}) {
+			@Override
+			protected void done() {
+				converted.incrementAndGet();
+			}
+		};
+		FutureTask<PathwayContext> parse = new FutureTask<PathwayContext>(
+				new Callable<PathwayContext>() {
+					@Override
+					public PathwayContext call() throws Exception {
+						long start = Metrics.start();
+						PathwayContext ctx = reader.call();
+						Metrics.stop(Metrics.Stage.PARSE, start);
+						Metrics.count(Metrics.Counter.PATHWAYS, 1);
+						return ctx;
+					}
+				}) {
+			@Override
+			protected void done() {
+				try {
+					mapping.execute(result);
+				} catch (RejectedExecutionException e) {
+					/* the run is over */
+					result.cancel(false);
+				}
+			}
+		};
+		parsed.set(parse);
+		parsing.execute(parse);
+		return result;
+	}
+
+	/**
+	 * @return pathways waiting to be parsed
+	 */
+	public int getParseQueueDepth() {
+		ThreadPoolExecutor stage = parsing;
+		return stage == null ? 0 : stage.getQueue().size();
+	}
+
+	/**
+	 * @return parsed pathways waiting for the task
+	 */
+	public int getMapQueueDepth() {
+		ThreadPoolExecutor stage = mapping;
+		return stage == null ? 0 : stage.getQueue().size();
+	}
+
+	/**
+	 * @return results waiting to be handled
+	 */
+	public int getSerializeQueueDepth() {
+		return Math.max(0, converted.get());
+	}
+
+	/**
+	 * Convenience for a single pathway directory.
+	 */
+	public <T> List<T> run(File pathwayDir, PathwayTask<T> task)
+			throws ConverterException {
+		return run(listPathways(pathwayDir), task);
+	}
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers which pathway files an incremental run has converted, so that
+ * the next run only converts what is new or changed.
+ * <p>
+ * The manifest lists the content hash (SHA-1), length and modification time
+ * of every pathway file, and the settings the fragments were made with: the
+ * bridge database fingerprint and the output options. When the settings
+ * change all fragments are out of date. A file whose length and time did
+ * not change is not hashed again.
+ *
+ * @author anwesha
+ *
+ */
+public class ConversionManifest {
+
+	private static final String FORMAT = "psimi-manifest 2";
+	private static final String FILE_NAME = "manifest.txt";
+
+	private final File dir;
+	private final String settings;
+	/* file name -> entry, as written by the previous run */
+	private final Map<String, Entry> previous;
+	/* file name -> entry, for this run */
+	private final Map<String, Entry> current = new LinkedHashMap<String, Entry>();
+	/* names of the files converted by this run */
+	private final Set<String> converted = new HashSet<String>();
+
+	private static class Entry {
+		final String hash;
+		final long length;
+		final long modified;
+
+		Entry(String hash, long length, long modified) {
+			this.hash = hash;
+			this.length = length;
+			this.modified = modified;
+		}
+	}
+
+	private ConversionManifest(File dir, String settings,
+			Map<String, Entry> previous) {
+		this.dir = dir;
+		this.settings = settings;
+		this.previous = previous;
+	}
+
+	/**
+	 * Fragment directory configured with the <code>psimi.incremental</code>
+	 * system property, or null for a full conversion.
+	 */
+	public static File defaultDir() {
+		String name = System.getProperty("psimi.incremental");
+		return name == null ? null : new File(name);
+	}
+
+	/**
+	 * Reads the manifest of the directory. Entries made with other settings
+	 * are dropped.
+	 *
+	 * @param settings
+	 *            everything besides the pathway file that the fragments
+	 *            depend on
+	 */
+	public static ConversionManifest open(File dir, String settings)
+			throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create " + dir);
+		}
+		Map<String, Entry> previous = new HashMap<String, Entry>();
+		File file = new File(dir, FILE_NAME);
+		if (file.isFile()) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), "UTF-8"));
+			try {
+				if (FORMAT.equals(in.readLine()) && settings.equals(in.readLine())) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						String[] cols = line.split("\t");
+						if (cols.length == 4) {
+							previous.put(cols[0], new Entry(cols[1], Long
+									.parseLong(cols[2]), Long.parseLong(cols[3])));
+						}
+					}
+				}
+			} finally {
+				in.close();
+			}
+			if (previous.isEmpty()) {
+				/* made with other settings, none of it can be used */
+				PathwayFragments.deleteAll(dir);
+			}
+		}
+		return new ConversionManifest(dir, settings, previous);
+	}
+
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * Adds the file to this run.
+	 *
+	 * @return the content hash of the file, the fragment key
+	 */
+	public String add(File file) throws IOException {
+		String name = file.getName();
+		Entry old = previous.get(name);
+		Entry entry;
+		if (old != null && old.length == file.length()
+				&& old.modified == file.lastModified()) {
+			entry = old;
+		} else {
+			entry = new Entry(hash(file), file.length(), file.lastModified());
+		}
+		current.put(name, entry);
+		return entry.hash;
+	}
+
+	/**
+	 * @return true if the fragments of the file are there from an earlier
+	 *         run with the same settings
+	 */
+	public boolean isConverted(File file) {
+		Entry entry = current.get(file.getName());
+		Entry old = previous.get(file.getName());
+		return entry != null && old != null && old.hash.equals(entry.hash)
+				&& PathwayFragments.exists(dir, entry.hash);
+	}
+
+	/**
+	 * Records that the fragments of the file were written by this run, for
+	 * {@link #checkpoint()}.
+	 */
+	public void markConverted(File file) {
+		converted.add(file.getName());
+	}
+
+	/**
+	 * Writes the manifest as far as this run got: the files converted so
+	 * far with their new hash, the others as the previous run left them. A
+	 * run that is interrupted after a checkpoint resumes from it. No
+	 * fragments are deleted.
+	 */
+	public void checkpoint() throws IOException {
+		Map<String, Entry> done = new LinkedHashMap<String, Entry>();
+		for (Map.Entry<String, Entry> e : current.entrySet()) {
+			Entry entry = converted.contains(e.getKey()) ? e.getValue()
+					: previous.get(e.getKey());
+			if (entry != null) {
+				done.put(e.getKey(), entry);
+			}
+		}
+		for (Map.Entry<String, Entry> e : previous.entrySet()) {
+			if (!done.containsKey(e.getKey())) {
+				done.put(e.getKey(), e.getValue());
+			}
+		}
+		write(done);
+	}
+
+	/**
+	 * Number of converted pathways between checkpoints, set with the
+	 * <code>psimi.checkpoint</code> system property, 100 by default.
+	 */
+	public static int defaultCheckpointInterval() {
+		return Math.max(1, Integer.getInteger("psimi.checkpoint", 100));
+	}
+
+	/**
+	 * @return the number of files of the previous run that are gone
+	 */
+	public int getRemovedCount() {
+		int removed = 0;
+		for (String name : previous.keySet()) {
+			if (!current.containsKey(name)) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Writes the manifest of this run and deletes the fragments no file
+	 * refers to anymore.
+	 */
+	public void save() throws IOException {
+		write(current);
+		Set<String> used = new HashSet<String>();
+		for (Entry entry : current.values()) {
+			used.add(entry.hash);
+		}
+		for (Entry entry : previous.values()) {
+			if (!used.contains(entry.hash)) {
+				PathwayFragments.delete(dir, entry.hash);
+			}
+		}
+	}
+
+	private void write(Map<String, Entry> entries) throws IOException {
+		File file = new File(dir, FILE_NAME);
+		File tmp = new File(dir, FILE_NAME + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tmp), "UTF-8"));
+		try {
+			out.write(FORMAT + "\n" + settings + "\n");
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				Entry entry = e.getValue();
+				out.write(e.getKey() + "\t" + entry.hash + "\t" + entry.length
+						+ "\t" + entry.modified + "\n");
+			}
+		} finally {
+			out.close();
+		}
+		if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+			throw new IOException("Could not replace " + file);
+		}
+	}
+
+	static String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		StringBuilder hex = new StringBuilder(40);
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit(b >> 4 & 0xf, 16)).append(
+					Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.pathvisio.core.model.ConverterException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Converts single pathways over HTTP on the loopback interface, with the
+ * bridge files opened once and the mapping caches kept warm between
+ * requests. A GPML file POSTed to one of the paths below is answered with
+ * the rows a command line run without shards or -Dpsimi.dedup writes for
+ * it, in the same order:
+ *
+ * <pre>
+ * POST /mitab        MITAB rows, with the column header
+ * POST /genes        Ensembl id and pathway rows
+ * POST /metabolites  pathway, label, Xref and type rows
+ * POST /go           pathway, gene and GO term rows
+ * GET  /status       mapping cache statistics
+ * </pre>
+ *
+ * Requests are handled concurrently on <code>psimi.threads</code> workers.
+ * An unreadable pathway is answered with 400 and the parse error, one that
+ * fails to convert with 500; with <code>psimi.failures</code> the latter
+ * are also listed in that report.
+ *
+ * @author anwesha
+ *
+ */
+public class ConversionServer {
+
+	public static final int DEFAULT_PORT = 8474;
+
+	private final Map<String, Interactions> converters = new LinkedHashMap<String, Interactions>();
+	private final ConversionEngine engine = new ConversionEngine();
+	private HttpServer server;
+	private ThreadPoolExecutor workers;
+
+	public ConversionServer() {
+		converter("/mitab", FragmentSink.Part.INTERACTIONS);
+		converter("/genes", FragmentSink.Part.GENE_PRODUCTS);
+		converter("/metabolites", FragmentSink.Part.METABOLITES);
+		converter("/go", FragmentSink.Part.GO_ANNOTATIONS);
+	}
+
+	private void converter(String path, FragmentSink.Part part) {
+		Interactions interactions = new Interactions();
+		interactions.parts = EnumSet.of(part);
+		converters.put(path, interactions);
+	}
+
+	/**
+	 * Usage: ConversionServer &lt;bridge dir&gt; [port]
+	 */
+	public static void main(String[] args) throws Exception {
+		Metrics.register();
+		File failuresFile = FailureReport.defaultFile();
+		if (failuresFile != null) {
+			Interactions.failures = new FailureReport(failuresFile);
+		}
+		Interactions.loadIdMappers(args[0]);
+		int port = args.length > 1 ? Integer.parseInt(args[1])
+				: DEFAULT_PORT;
+		final ConversionServer server = new ConversionServer();
+		server.start(port, ConversionEngine.defaultThreads());
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop();
+				try {
+					Interactions.saveSnapshot();
+					Metrics.writeSummary();
+					if (Interactions.failures != null) {
+						Interactions.failures.close();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		System.out.println("Listening on http://localhost:"
+				+ server.getPort() + "/");
+	}
+
+	/**
+	 * Starts listening on the loopback interface; port 0 picks a free one.
+	 */
+	public void start(int port, int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getByName(null), port), 0);
+		workers = ConversionEngine.stage("http", threads);
+		server.setExecutor(workers);
+		for (Map.Entry<String, Interactions> converter : converters
+				.entrySet()) {
+			server.createContext(converter.getKey(), new ConvertHandler(
+					converter.getValue()));
+		}
+		server.createContext("/status", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				Object stats = Interactions.routing != null ? Interactions.routing
+						: Interactions.mappingCache;
+				reply(exchange, 200, stats + "\n");
+			}
+		});
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to a second for the running
+	 * ones.
+	 */
+	public void stop() {
+		server.stop(1);
+		workers.shutdown();
+	}
+
+	private class ConvertHandler implements HttpHandler {
+		private final Interactions interactions;
+
+		ConvertHandler(Interactions interactions) {
+			this.interactions = interactions;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					reply(exchange, 405, "POST a GPML file\n");
+					return;
+				}
+				PathwayContext ctx;
+				InputStream in = exchange.getRequestBody();
+				try {
+					ctx = engine.read(in);
+				} finally {
+					in.close();
+				}
+				String rows;
+				try {
+					rows = convert(interactions, ctx);
+				} catch (IOException e) {
+					failed(exchange, ctx, e);
+					return;
+				} catch (RuntimeException e) {
+					failed(exchange, ctx, e);
+					return;
+				}
+				reply(exchange, 200, rows);
+			} catch (ConverterException e) {
+				reply(exchange, 400, e.getMessage() + "\n");
+			} catch (RuntimeException e) {
+				reply(exchange, 500, e + "\n");
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers 500 for a pathway that could not be converted, and lists it in
+	 * the failure report if there is one.
+	 */
+	private static void failed(HttpExchange exchange, PathwayContext ctx,
+			Exception cause) throws IOException {
+		reply(exchange, 500, cause + "\n");
+		if (Interactions.failures != null) {
+			Interactions.failures.failed(ctx.pathwayName, cause);
+		}
+	}
+
+	/**
+	 * @return the rows of the part the converter is set up for
+	 */
+	private static String convert(Interactions interactions,
+			PathwayContext ctx) throws IOException {
+		PathwayFragments fragments = interactions.convertFragments(ctx);
+		StringWriter out = new StringWriter();
+		FragmentSink.Part part = interactions.parts.iterator().next();
+		switch (part) {
+		case INTERACTIONS:
+			MitabWriter header = new MitabWriter(out, interactions.mitabVersion);
+			header.writeHeader();
+			header.flush();
+			out.write(fragments.interactions);
+			break;
+		case GENE_PRODUCTS:
+			for (Map.Entry<String, String> gp : fragments.geneProducts
+					.entrySet()) {
+				out.write(gp.getKey() + "\t" + gp.getValue() + "\n");
+			}
+			break;
+		case METABOLITES:
+			out.write("#pathway\tlabel\txref\ttype\n");
+			for (String row : fragments.metabolites) {
+				out.write(row + "\n");
+			}
+			break;
+		default:
+			out.write("#pathway\tgene\tgo term\n");
+			for (String row : fragments.goAnnotations) {
+				out.write(row + "\n");
+			}
+			break;
+		}
+		return out.toString();
+	}
+
+	private static void reply(HttpExchange exchange, int status, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type",
+				"text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+}
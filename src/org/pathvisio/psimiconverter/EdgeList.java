@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+
+import org.bridgedb.DataSource;
+
+/**
+ * Collects the interactions of one pathway as participant pairs for the
+ * binary network, one <code>pathway \t A \t B \t type</code> line each.
+ * Rows of n-ary interactions, which have no second participant, are left
+ * out.
+ *
+ * @author anwesha
+ *
+ */
+public class EdgeList implements InteractionSink {
+
+	private final StringBuilder lines = new StringBuilder();
+
+	@Override
+	public void writeInteraction(String pathwayName, String organism,
+			Participant a, Participant b, String[] interactionType,
+			String[] expansion, String complexId, String annotation) {
+		if (b == null) {
+			return;
+		}
+		lines.append(PathwayFragments.oneLine(pathwayName)).append('\t')
+		.append(node(a)).append('\t').append(node(b)).append('\t')
+		.append(interactionType[0]).append('(').append(interactionType[1])
+		.append(")\n");
+	}
+
+	/**
+	 * @return the node of a participant, the system code and id of its Xref.
+	 *         Without a system code the MITAB database name is used, which
+	 *         is "unknown" for an Xref without DataSource.
+	 */
+	static String node(Participant p) {
+		DataSource ds = p.ref.getDataSource();
+		String code = ds != null && ds.getSystemCode() != null ? ds
+				.getSystemCode() : MitabWriter.dbName(ds);
+		return PathwayFragments.oneLine(code + ":" + p.ref.getId());
+	}
+
+	@Override
+	public String toString() {
+		return lines.toString();
+	}
+
+	/**
+	 * Passes the rows to two sinks.
+	 */
+	static InteractionSink tee(final InteractionSink first,
+			final InteractionSink second) {
+		return new InteractionSink() {
+			@Override
+			public void writeInteraction(String pathwayName, String organism,
+					Participant a, Participant b, String[] interactionType,
+					String[] expansion, String complexId, String annotation)
+							throws IOException {
+				first.writeInteraction(pathwayName, organism, a, b,
+						interactionType, expansion, complexId, annotation);
+				second.writeInteraction(pathwayName, organism, a, b,
+						interactionType, expansion, complexId, annotation);
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Lists the pathways a run could not convert and the identifier mapping
+ * errors it ran into, one <code>source \t kind \t error</code> row each.
+ * The source is the pathway file for failed pathways and the pathway name
+ * for mapping errors. Rows are flushed as they are added, so the report is
+ * complete up to the moment a run is interrupted.
+ *
+ * @author anwesha
+ *
+ */
+public class FailureReport implements ConversionEngine.FailureHandler {
+
+	private final Writer out;
+	private int failedPathways;
+	private int mappingErrors;
+
+	public FailureReport(File file) throws IOException {
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8"));
+		out.write("#source\tkind\terror\n");
+		out.flush();
+	}
+
+	/**
+	 * Report file set with the <code>psimi.failures</code> system property,
+	 * or null to stop a run at the first pathway that fails.
+	 */
+	public static File defaultFile() {
+		String name = System.getProperty("psimi.failures");
+		return name == null ? null : new File(name);
+	}
+
+	@Override
+	public synchronized void failed(String pathway, Exception cause)
+			throws IOException {
+		failedPathways++;
+		Metrics.count(Metrics.Counter.FAILED_PATHWAYS, 1);
+		write(pathway, "pathway", cause);
+	}
+
+	/**
+	 * Records a failed lookup; the Xrefs concerned are written unmapped.
+	 */
+	public synchronized void mappingError(String pathway, Exception cause) {
+		mappingErrors++;
+		Metrics.count(Metrics.Counter.MAPPING_ERRORS, 1);
+		try {
+			write(pathway, "mapping", cause);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void write(String source, String kind, Exception cause)
+			throws IOException {
+		out.write(PathwayFragments.oneLine(source) + "\t" + kind + "\t"
+				+ PathwayFragments.oneLine(cause.toString()) + "\n");
+		out.flush();
+	}
+
+	public synchronized int getFailedPathways() {
+		return failedPathways;
+	}
+
+	public synchronized int getMappingErrors() {
+		return mappingErrors;
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Failures: " + failedPathways + " pathways, " + mappingErrors
+				+ " mapping errors";
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+
+/**
+ * One of the files the command line writes, fed with the results of every
+ * pathway in file order on one thread.
+ *
+ * @author anwesha
+ *
+ */
+public interface FragmentSink {
+
+	/**
+	 * The parts of the results the sink uses; the conversion leaves out the
+	 * work for parts no sink uses.
+	 */
+	enum Part {
+		INTERACTIONS, GENE_PRODUCTS, METABOLITES, GO_ANNOTATIONS, NETWORK
+	}
+
+	Part getPart();
+
+	void add(PathwayFragments fragments) throws IOException;
+
+	void close() throws IOException;
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The files written by the command line. The MITAB rows, metabolites and GO
+ * annotations are appended as the pathways come in; the gene products, the
+ * binary network and deduplicated MITAB rows are merged and written on
+ * close. The merged ids are kept as dictionary codes, as they add up to
+ * millions of entries for the whole corpus. Sharded runs are sorted by
+ * {@link ShardMerge} afterwards.
+ *
+ * @author anwesha
+ *
+ */
+public class FragmentSinks {
+
+	private FragmentSinks() {
+	}
+
+	private static Writer open(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8"));
+	}
+
+	/**
+	 * Interaction rows, with the column header of the version.
+	 */
+	public static FragmentSink interactions(File file,
+			MitabWriter.Version version) throws IOException {
+		final Writer out = open(file);
+		MitabWriter header = new MitabWriter(out, version);
+		header.writeHeader();
+		header.flush();
+		return new FragmentSink() {
+			@Override
+			public Part getPart() {
+				return Part.INTERACTIONS;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) throws IOException {
+				out.write(fragments.interactions);
+			}
+
+			@Override
+			public void close() throws IOException {
+				out.close();
+			}
+		};
+	}
+
+	/**
+	 * Interaction rows merged on interactors and interaction type, with the
+	 * column header of the version.
+	 *
+	 * @param memory
+	 *            bytes of rows kept in memory before they are sorted to disk
+	 * @see InteractionDedup
+	 */
+	public static FragmentSink mergedInteractions(final File file,
+			final MitabWriter.Version version, long memory) {
+		final InteractionDedup dedup = new InteractionDedup(memory);
+		return new FragmentSink() {
+			@Override
+			public Part getPart() {
+				return Part.INTERACTIONS;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) throws IOException {
+				dedup.add(fragments.interactions);
+			}
+
+			@Override
+			public void close() throws IOException {
+				Writer out = open(file);
+				try {
+					MitabWriter header = new MitabWriter(out, version);
+					header.writeHeader();
+					header.flush();
+					dedup.writeTo(out);
+				} finally {
+					out.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Ensembl id and pathway lines, one per gene product of the corpus with
+	 * the last pathway it is in.
+	 */
+	public static FragmentSink geneProducts(File file) {
+		return geneProducts(file, false);
+	}
+
+	/**
+	 * @param greatestPathway
+	 *            keep the pathway with the greatest name instead of the last
+	 *            one, which does not depend on the order of the pathways, for
+	 *            shards that are merged later
+	 */
+	public static FragmentSink geneProducts(final File file,
+			final boolean greatestPathway) {
+		return new FragmentSink() {
+			/* gene products in the order first seen, and their last pathway */
+			final StringDictionary genes = new StringDictionary();
+			final StringDictionary pathways = new StringDictionary();
+			int[] pathwayOfGene = new int[1024];
+
+			@Override
+			public Part getPart() {
+				return Part.GENE_PRODUCTS;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) {
+				for (Map.Entry<String, String> gp : fragments.geneProducts
+						.entrySet()) {
+					int known = genes.size();
+					int gene = genes.encode(gp.getKey());
+					if (gene == pathwayOfGene.length) {
+						pathwayOfGene = Arrays.copyOf(pathwayOfGene, gene * 2);
+					}
+					if (greatestPathway
+							&& gene < known
+							&& pathways.decode(pathwayOfGene[gene]).compareTo(
+									gp.getValue()) >= 0) {
+						continue;
+					}
+					pathwayOfGene[gene] = pathways.encode(gp.getValue());
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				Writer out = open(file);
+				try {
+					for (int gene = 0; gene < genes.size(); gene++) {
+						genes.write(gene, out);
+						out.write('\t');
+						pathways.write(pathwayOfGene[gene], out);
+						out.write('\n');
+					}
+				} finally {
+					out.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Pathway, label, Xref and type rows of the metabolites.
+	 */
+	public static FragmentSink metabolites(File file) throws IOException {
+		final Writer out = open(file);
+		out.write("#pathway\tlabel\txref\ttype\n");
+		return new FragmentSink() {
+			@Override
+			public Part getPart() {
+				return Part.METABOLITES;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) throws IOException {
+				for (String row : fragments.metabolites) {
+					out.write(row);
+					out.write('\n');
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				out.close();
+			}
+		};
+	}
+
+	/**
+	 * Pathway, Ensembl gene and GO term rows.
+	 *
+	 * @param termsFile
+	 *            receives the sorted distinct GO terms, may be null
+	 */
+	public static FragmentSink goAnnotations(File file, final File termsFile)
+			throws IOException {
+		final Writer out = open(file);
+		out.write("#pathway\tgene\tgo term\n");
+		final SpillingStringSet terms = termsFile == null ? null
+				: new SpillingStringSet(SpillingStringSet.defaultSize());
+		return new FragmentSink() {
+			@Override
+			public Part getPart() {
+				return Part.GO_ANNOTATIONS;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) throws IOException {
+				for (String row : fragments.goAnnotations) {
+					out.write(row);
+					out.write('\n');
+					if (terms != null) {
+						terms.add(row.substring(row.lastIndexOf('\t') + 1));
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				out.close();
+				if (terms != null) {
+					Writer termsOut = open(termsFile);
+					try {
+						terms.writeTo(termsOut);
+					} finally {
+						termsOut.close();
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * The interactions between two participants as a binary network.
+	 *
+	 * @see BinaryNetworkWriter
+	 */
+	public static FragmentSink network(File file) throws IOException {
+		final BinaryNetworkWriter writer = new BinaryNetworkWriter(file);
+		return new FragmentSink() {
+			@Override
+			public Part getPart() {
+				return Part.NETWORK;
+			}
+
+			@Override
+			public void add(PathwayFragments fragments) throws IOException {
+				writer.addEdges(fragments.edges);
+			}
+
+			@Override
+			public void close() throws IOException {
+				writer.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import org.bridgedb.DataSource;
+import org.pathvisio.core.model.GroupStyle;
+import org.pathvisio.core.model.ObjectType;
+import org.pathvisio.core.model.PathwayElement;
+
+/**
+ * The part of a GPML DataNode, Group or Interaction the converter uses. The
+ * getters follow {@link PathwayElement}.
+ *
+ * @author anwesha
+ *
+ */
+public class GpmlElement {
+
+	final ObjectType objectType;
+	String graphId;
+	/* DataNode */
+	String textLabel;
+	String dataNodeType = "Unknown";
+	String elementId = "";
+	DataSource dataSource;
+	String groupRef;
+	/* Group */
+	String groupId;
+	boolean complex;
+	/* Interaction */
+	String startGraphRef;
+	String endGraphRef;
+	String startLineType;
+	String endLineType;
+
+	GpmlElement(ObjectType objectType) {
+		this.objectType = objectType;
+	}
+
+	/**
+	 * Copies the fields the converter uses from a PathVisio element.
+	 */
+	static GpmlElement fromPathwayElement(PathwayElement pwe) {
+		GpmlElement element = new GpmlElement(pwe.getObjectType());
+		element.graphId = pwe.getGraphId();
+		element.groupRef = pwe.getGroupRef();
+		switch (pwe.getObjectType()) {
+		case DATANODE:
+			element.textLabel = pwe.getTextLabel();
+			element.dataNodeType = pwe.getDataNodeType();
+			element.elementId = pwe.getElementID();
+			element.dataSource = pwe.getDataSource();
+			break;
+		case GROUP:
+			element.groupId = pwe.getGroupId();
+			element.complex = pwe.getGroupStyle() == GroupStyle.COMPLEX;
+			break;
+		case LINE:
+			element.startGraphRef = pwe.getStartGraphRef();
+			element.endGraphRef = pwe.getEndGraphRef();
+			element.startLineType = pwe.getStartLineType() == null ? null
+					: pwe.getStartLineType().getName();
+			element.endLineType = pwe.getEndLineType() == null ? null : pwe
+					.getEndLineType().getName();
+			break;
+		default:
+			break;
+		}
+		return element;
+	}
+
+	public ObjectType getObjectType() {
+		return objectType;
+	}
+
+	public String getGraphId() {
+		return graphId;
+	}
+
+	public String getTextLabel() {
+		return textLabel;
+	}
+
+	public String getDataNodeType() {
+		return dataNodeType;
+	}
+
+	public String getElementID() {
+		return elementId;
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public String getGroupRef() {
+		return groupRef;
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+
+	/**
+	 * @return true for a group with the Complex style
+	 */
+	public boolean isComplex() {
+		return complex;
+	}
+
+	public String getStartGraphRef() {
+		return startGraphRef;
+	}
+
+	public String getEndGraphRef() {
+		return endGraphRef;
+	}
+
+	/**
+	 * @return the arrow head at the start of an interaction
+	 */
+	public String getStartLineType() {
+		return startLineType;
+	}
+
+	/**
+	 * @return the arrow head at the end of an interaction
+	 */
+	public String getEndLineType() {
+		return endLineType;
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.bridgedb.DataSource;
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.ObjectType;
+
+/**
+ * Pulls the DataNodes, Groups and Interactions out of a GPML file with a
+ * StAX parser, without validating it or building a PathVisio
+ * {@link org.pathvisio.core.model.Pathway}. Graphics, comments, labels,
+ * shapes and BioPAX are skipped.
+ *
+ * @author anwesha
+ *
+ */
+public class GpmlReader {
+
+	private static final XMLInputFactory FACTORY = XMLInputFactory
+			.newInstance();
+	static {
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, false);
+	}
+	/* one instance of the data node types and arrow heads of all files */
+	private static final Map<String, String> VALUES = new HashMap<String, String>();
+	static {
+		for (String value : new String[] { "GeneProduct", "Protein", "Rna",
+				"Metabolite", "Complex", "Pathway", "Unknown", "Line", "Arrow",
+				"TBar", "mim-conversion", "mim-stimulation", "mim-catalysis",
+				"mim-inhibition", "mim-binding", "mim-necessary-stimulation",
+				"mim-modification", "mim-cleavage", "mim-transcription-translation",
+				"mim-gap", "mim-branching-left", "mim-branching-right",
+				"mim-covalent-bond" }) {
+			VALUES.put(value, value);
+		}
+	}
+
+	private GpmlReader() {
+	}
+
+	public static PathwayContext read(File file) throws ConverterException {
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(file));
+			try {
+				return read(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new ConverterException(e);
+		}
+	}
+
+	public static PathwayContext read(InputStream in) throws ConverterException {
+		String name = null;
+		String organism = null;
+		List<GpmlElement> elements = new ArrayList<GpmlElement>();
+		try {
+			XMLStreamReader xml = FACTORY.createXMLStreamReader(in);
+			try {
+				/* the element the Xref or Points being read belong to */
+				GpmlElement current = null;
+				boolean firstPoint = false;
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String tag = xml.getLocalName();
+						if ("Pathway".equals(tag)) {
+							name = xml.getAttributeValue(null, "Name");
+							organism = xml.getAttributeValue(null, "Organism");
+						} else if ("DataNode".equals(tag)) {
+							current = new GpmlElement(ObjectType.DATANODE);
+							current.graphId = xml.getAttributeValue(null,
+									"GraphId");
+							current.textLabel = xml.getAttributeValue(null,
+									"TextLabel");
+							String type = xml.getAttributeValue(null, "Type");
+							if (type != null) {
+								current.dataNodeType = canonical(type);
+							}
+							current.groupRef = xml.getAttributeValue(null,
+									"GroupRef");
+							elements.add(current);
+						} else if ("Interaction".equals(tag)) {
+							current = new GpmlElement(ObjectType.LINE);
+							firstPoint = true;
+							current.graphId = xml.getAttributeValue(null,
+									"GraphId");
+							current.groupRef = xml.getAttributeValue(null,
+									"GroupRef");
+							elements.add(current);
+						} else if ("Group".equals(tag)) {
+							GpmlElement group = new GpmlElement(
+									ObjectType.GROUP);
+							group.graphId = xml.getAttributeValue(null,
+									"GraphId");
+							group.groupId = xml.getAttributeValue(null,
+									"GroupId");
+							group.groupRef = xml.getAttributeValue(null,
+									"GroupRef");
+							group.complex = "Complex".equalsIgnoreCase(xml
+									.getAttributeValue(null, "Style"));
+							elements.add(group);
+						} else if ("Xref".equals(tag) && current != null
+								&& current.objectType == ObjectType.DATANODE) {
+							String id = xml.getAttributeValue(null, "ID");
+							String db = xml.getAttributeValue(null, "Database");
+							current.elementId = id == null ? "" : id.trim();
+							if (db != null && db.trim().length() > 0) {
+								current.dataSource = DataSource.getByFullName(db
+										.trim());
+							}
+						} else if ("Point".equals(tag) && current != null
+								&& current.objectType == ObjectType.LINE) {
+							String graphRef = xml.getAttributeValue(null,
+									"GraphRef");
+							String arrowHead = xml.getAttributeValue(null,
+									"ArrowHead");
+							/* the first Point is the start, the last the end */
+							if (firstPoint) {
+								current.startGraphRef = graphRef;
+								current.startLineType = arrowHead(arrowHead);
+								firstPoint = false;
+							} else {
+								current.endGraphRef = graphRef;
+								current.endLineType = arrowHead(arrowHead);
+							}
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						String tag = xml.getLocalName();
+						if ("DataNode".equals(tag) || "Interaction".equals(tag)) {
+							current = null;
+						}
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new ConverterException(e);
+		}
+		return new PathwayContext(name, organism, elements);
+	}
+
+	/**
+	 * GPML leaves out the ArrowHead of a plain line.
+	 */
+	private static String arrowHead(String arrowHead) {
+		return arrowHead == null ? "Line" : canonical(arrowHead);
+	}
+
+	private static String canonical(String value) {
+		String known = VALUES.get(value);
+		return known == null ? value : known;
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Merges the MITAB rows of the corpus that have the same interactors A and
+ * B and interaction type into one row. The interactors may come in either
+ * order unless the type is a reaction of A on B. A row without interactor B,
+ * a complex member of an n-ary expansion, is only merged with the rows of
+ * the same complex in the same pathway. The merged row is the first one
+ * seen with the interaction identifiers of all rows, so it lists every
+ * pathway the interaction is in. The rows are sorted on their key with a
+ * {@link SpillingStringSet}, so a corpus larger than the memory budget is
+ * merged from sorted runs on disk; the output is in key order.
+ * <p>
+ * Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class InteractionDedup {
+
+	private static final int A = 0;
+	private static final int B = 1;
+	private static final int TYPE = 11;
+	/* column of the interaction identifiers, wikipathways:name|complex:id */
+	private static final int IDENTIFIERS = 13;
+	/* fields of the key: both interactors, the type and the complex */
+	private static final int KEY_FIELDS = 4;
+	/* interaction types in which A acts on B, so A and B are not swapped */
+	private static final String[] DIRECTED = { MiTerms.CLEAVAGE_REACTION[0],
+		MiTerms.ENZYMATIC_REACTION[0] };
+
+	private final SpillingStringSet rows;
+	private long sequence;
+	private long rowCount;
+	private long mergedCount;
+
+	/**
+	 * @param memory
+	 *            bytes of heap the buffered rows may take before they are
+	 *            spilled to disk
+	 */
+	public InteractionDedup(long memory) {
+		rows = new SpillingStringSet(Integer.MAX_VALUE,
+				SpillingStringSet.maxChars(memory));
+	}
+
+	/**
+	 * Memory budget set with the <code>psimi.dedup.memory</code> system
+	 * property, in megabytes, 64 by default.
+	 */
+	public static long defaultMemory() {
+		return Long.getLong("psimi.dedup.memory", 64) << 20;
+	}
+
+	/**
+	 * Adds MITAB rows, each ended by a line break.
+	 */
+	public void add(String mitabRows) throws IOException {
+		int start = 0;
+		while (start < mitabRows.length()) {
+			int end = mitabRows.indexOf('\n', start);
+			if (end < 0) {
+				end = mitabRows.length();
+			}
+			addRow(mitabRows.substring(start, end));
+			start = end + 1;
+		}
+	}
+
+	private void addRow(String row) throws IOException {
+		String[] columns = row.split("\t", -1);
+		String a = columns[A];
+		String b = columns[B];
+		String complex = "-";
+		if ("-".equals(b)) {
+			/* complex ids are graph ids, only unique within a pathway */
+			complex = columns[IDENTIFIERS];
+		} else if (!isDirected(columns[TYPE]) && a.compareTo(b) > 0) {
+			a = columns[B];
+			b = columns[A];
+		}
+		StringBuilder record = new StringBuilder(row.length() + 64);
+		record.append(a).append('\t').append(b).append('\t')
+		.append(columns[TYPE]).append('\t').append(complex).append('\t');
+		/* rows of a key stay in the order they came in */
+		String seq = Long.toHexString(sequence++);
+		for (int i = seq.length(); i < 16; i++) {
+			record.append('0');
+		}
+		record.append(seq).append('\t').append(row);
+		rows.add(record.toString());
+		rowCount++;
+	}
+
+	private static boolean isDirected(String type) {
+		for (String id : DIRECTED) {
+			if (type.contains(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the number of rows written by {@link #writeTo(Writer)}
+	 */
+	public long getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * Writes the merged rows and deletes the spilled runs.
+	 */
+	public void writeTo(Writer out) throws IOException {
+		Merger merger = new Merger(out);
+		rows.merge(merger);
+		merger.flush();
+	}
+
+	/**
+	 * Merges the sorted rows of each key into one.
+	 */
+	private class Merger implements SpillingStringSet.Lines {
+		private final Writer out;
+		private final Set<String> identifiers = new LinkedHashSet<String>();
+		private String key;
+		private String[] first;
+
+		Merger(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void line(String record) throws IOException {
+			int end = 0;
+			for (int i = 0; i < KEY_FIELDS; i++) {
+				end = record.indexOf('\t', end) + 1;
+			}
+			String recordKey = record.substring(0, end);
+			String[] columns = record.substring(record.indexOf('\t', end) + 1)
+					.split("\t", -1);
+			if (!recordKey.equals(key)) {
+				flush();
+				key = recordKey;
+				first = columns;
+			}
+			splitIdentifiers(columns[IDENTIFIERS], identifiers);
+		}
+
+		void flush() throws IOException {
+			if (first == null) {
+				return;
+			}
+			StringBuilder merged = new StringBuilder();
+			for (String id : identifiers) {
+				if (merged.length() > 0) {
+					merged.append('|');
+				}
+				merged.append(id);
+			}
+			first[IDENTIFIERS] = merged.toString();
+			for (int i = 0; i < first.length; i++) {
+				if (i > 0) {
+					out.write('\t');
+				}
+				out.write(first[i]);
+			}
+			out.write('\n');
+			mergedCount++;
+			identifiers.clear();
+			first = null;
+		}
+	}
+
+	/**
+	 * Adds the values of a MITAB column, split on the | separators that are
+	 * not inside a quoted value.
+	 */
+	static void splitIdentifiers(String column, Set<String> result) {
+		boolean quoted = false;
+		int start = 0;
+		for (int i = 0; i < column.length(); i++) {
+			char c = column.charAt(i);
+			if (c == '\\' && quoted) {
+				i++;
+			} else if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '|' && !quoted) {
+				result.add(column.substring(start, i));
+				start = i + 1;
+			}
+		}
+		result.add(column.substring(start));
+	}
+}
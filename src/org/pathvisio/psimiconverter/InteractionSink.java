@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+
+/**
+ * Receives the interactions found in the pathways, one row at a time.
+ *
+ * @author anwesha
+ *
+ */
+public interface InteractionSink {
+
+	/**
+	 * @param organism
+	 *            latin name of the organism of the pathway
+	 * @param b
+	 *            the second participant, or null for a row of an n-ary
+	 *            interaction
+	 * @param expansion
+	 *            how the row was expanded from a complex, or null
+	 * @param complexId
+	 *            GroupId of the complex the row comes from, or null
+	 * @param annotation
+	 *            free text interaction annotation, or null
+	 */
+	void writeInteraction(String pathwayName, String organism, Participant a,
+			Participant b, String[] interactionType, String[] expansion,
+			String complexId, String annotation) throws IOException;
+}
@@ -18,56 +18,57 @@ package org.pathvisio.psimiconverter;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
-import org.bridgedb.BridgeDb;
 import org.bridgedb.DataSource;
 import org.bridgedb.IDMapper;
 import org.bridgedb.IDMapperException;
 import org.bridgedb.IDMapperStack;
 import org.bridgedb.Xref;
 import org.pathvisio.core.model.ConverterException;
-import org.pathvisio.core.model.GroupStyle;
 import org.pathvisio.core.model.ObjectType;
 import org.pathvisio.core.model.Pathway;
-import org.pathvisio.core.model.PathwayElement;
-import org.pathvisio.core.model.PathwayExporter;
 import org.pathvisio.core.util.FileUtils;
-
-import psidev.psi.mi.xml.model.PsiFactory;
-import psidev.psi.mi.xml.model.Source;
+import org.pathvisio.core.util.ProgressKeeper;
 
 /**
  * @author anwesha
  * 
  */
-public class Interactions implements PathwayExporter {
-
-	/* the source contains the organization information */
-	Source source = PsiFactory.createSource("WikiPathways");
-	/* HashMaps to store information of datanodes */
-	Map<String, String> uniquedatanodeList;
-	Set<String> uniqueGOList;
-	Map<String, String> datanodeIdList;
-	Map<String, String> datanodeDbList;
-	Map<String, String> datanodeTypeList;
-	Map<String, String> datanodeNameList;
-	List<String> complexIdList;
-	List<String> complexIdMap;
-	List<String> complexDbMap;
-	List<String> complexTypeMap;
-	List<String> complexNameMap;
+public class Interactions implements PathwayContextExporter {
+
 	/* IDMappers */
 	static IDMapperStack loadedGdbs;
-	List<String> interactions;
+	/* Remembers lookups, the same Xrefs come back in many pathways */
+	static MappingCache mappingCache;
+	/* Caches per organism in front of its own bridge files, may be null */
+	static SpeciesRouting routing;
+	/* Identifies the loaded bridge files, see MappingSnapshot#fingerprint */
+	static long bridgeFingerprint;
+	/* Collects the lookups of a run that the snapshot does not answer */
+	static MappingSnapshot.Builder snapshotBuilder;
+	/* Where failed pathways and lookups are reported, null to stop at them */
+	static FailureReport failures;
+	/* Runs the pathways of a directory on several cores */
+	ConversionEngine engine = new ConversionEngine();
+	/* How complexes are written as interaction rows */
+	ComplexExpansion expansion = ComplexExpansion.defaultExpansion();
+	MitabWriter.Version mitabVersion = MitabWriter.defaultVersion();
+	/* What the command line converts, the parts its outputs use */
+	Set<FragmentSink.Part> parts = EnumSet.allOf(FragmentSink.Part.class);
 
 	/**
 	 * Modified example script available at
@@ -80,188 +81,359 @@ public class Interactions implements PathwayExporter {
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception {
-		String interaction = "";
 		System.out.println("Started");
+		Metrics.register();
 		/*
 		 * Read args
 		 */
 		String pathwayDirName = args[0];
 		String dbDirName = args[1];
-		String interactionFileName = args[2];
-		String genesProtsFileName = args[3];
-		String goFileName = args[5];
-		// String metabolitesFileName = args[4];
+		/* output files, "-" for the ones that are not wanted */
+		File interactionFile = outputFile(args, 2);
+		File genesProtsFile = outputFile(args, 3);
+		File metabolitesFile = outputFile(args, 4);
+		File goFile = outputFile(args, 5);
 		Interactions psimi = new Interactions();
-		psimi.loadIdMappers(dbDirName);
-		File pathwayDir = new File(pathwayDirName);
-		/*
-		 * Genes + Proteins
-		 */
-		// File genesProtsFile = new File(genesProtsFileName);
-		// genesProtsFile.createNewFile();
-		// BufferedWriter writerGenesProts = new BufferedWriter(new FileWriter(
-		// genesProtsFileName));
-		/*
-		 * GO Terms
-		 */
-		File GOFile = new File(goFileName);
-		GOFile.createNewFile();
-		BufferedWriter writerGO = new BufferedWriter(new FileWriter(goFileName));
-		// writerGenesProts.write("PathwayName\tName\tID\tNodeType\n");
-		// /*
-		// * Metabolites
-		// */
-		// File metabolitesFile = new File(metabolitesFileName);
-		// metabolitesFile.createNewFile();
-		// BufferedWriter writerMets = new BufferedWriter(new FileWriter(
-		// metabolitesFileName));
-		// writerMets.write("PathwayName\tName\tID\tNodeType\n");
-		/*
-		 * Interactions
-		 */
-		// File interactionsFile = new File(interactionFileName);
-		// interactionsFile.createNewFile();
-		// BufferedWriter writerInters = new BufferedWriter(new FileWriter(
-		// interactionsFile));
-		// writerInters
-		// .write("PathwayName\tSourceName\tSourceID\tSourceNodeType\tStartInteractionType\tTargetName\tTargetID\tTargetNodeType\tEndInteractionType\n");
-
-		//		for (File file : pathwayDir.listFiles()) {
-		//			Pathway pathway = new Pathway();
-		//			pathway.readFromXml(file, true);
-
-		// psimi.getNodeInfo(pathway);
-		// for (PathwayElement pwe : pathway.getDataObjects()) {
-		// if (pwe.getObjectType() == ObjectType.LINE) {
-		// System.out.println("here");
-		// psimi
-		// .convertInter(pathway, pwe, writerInters);
-		// // System.out.println(interaction);
-		// // writerInters.write(interaction);
-		// }
-		// }
-		// psimi.getComplexInfo(pathway);
-		// psimi.convertComplexToInteractions(pathway, writerInters);
-		//		}
-		// Map<String, String> gps = psimi.getUniqueGPs(pathwayDir);
-		// for(int i =0; i<gps.size();i++) {
-		// String name = gps.get(i);
-		// String value = gps.get(name);
-		// writerGenesProts.write(name + "\t" + value);
-		// }
-		// writerGenesProts.write(psimi.getUniqueGPs(pathwayDir).toString());
-		writerGO.write(psimi.getUniqueGOTerms(pathwayDir).toString());
-		writerGO.flush();
-		writerGO.close();
-		// writerGenesProts.flush();
-		// writerGenesProts.close();
-		// writerMets.flush();
-		// writerMets.close();
-		// writerInters.flush();
-		// writerInters.close();
+		/* a directory of GPML files, or a zip or tar.gz archive of them */
+		File pathways = new File(pathwayDirName);
+		File fragmentDir = ConversionManifest.defaultDir();
+		if (fragmentDir != null && PathwayArchive.isArchive(pathways)) {
+			throw new ConverterException(
+					"Incremental runs need a pathway directory");
+		}
+		String goTermsFileName = System.getProperty("psimi.go.terms");
+		String networkFileName = System.getProperty("psimi.network");
+		Shard shard = Shard.defaultShard();
+		if (shard != null
+				&& (networkFileName != null || Boolean.getBoolean("psimi.dedup"))) {
+			/* ShardMerge can't combine them */
+			throw new ConverterException(
+					"psimi.network and psimi.dedup can't be used with psimi.shard");
+		}
+		loadIdMappers(dbDirName);
+		File failuresFile = FailureReport.defaultFile();
+		if (failuresFile != null) {
+			failures = new FailureReport(failuresFile);
+			psimi.engine.setFailureHandler(failures);
+		}
+		Outputs outputs = new Outputs();
+		try {
+			if (interactionFile != null && Boolean.getBoolean("psimi.dedup")) {
+				outputs.register(FragmentSinks.mergedInteractions(
+						interactionFile, psimi.mitabVersion,
+						InteractionDedup.defaultMemory()));
+			} else if (interactionFile != null) {
+				outputs.register(FragmentSinks.interactions(interactionFile,
+						psimi.mitabVersion));
+			}
+			if (genesProtsFile != null) {
+				outputs.register(FragmentSinks.geneProducts(genesProtsFile,
+						shard != null));
+			}
+			if (metabolitesFile != null) {
+				outputs.register(FragmentSinks.metabolites(metabolitesFile));
+			}
+			if (goFile != null) {
+				outputs.register(FragmentSinks.goAnnotations(goFile,
+						goTermsFileName == null ? null : new File(
+								goTermsFileName)));
+			}
+			if (networkFileName != null) {
+				outputs.register(FragmentSinks.network(new File(
+						networkFileName)));
+			}
+			psimi.parts = outputs.parts;
+			if (PathwayArchive.isArchive(pathways)) {
+				psimi.convert(pathways, shard, outputs);
+			} else {
+				List<File> files = ConversionEngine.listPathways(pathways);
+				if (shard != null) {
+					files = shard.select(files);
+					System.out.println("Shard " + shard + ": " + files.size()
+							+ " pathways");
+				}
+				if (fragmentDir == null) {
+					psimi.convert(files, outputs);
+				} else {
+					psimi.convertIncremental(files, fragmentDir, outputs);
+				}
+			}
+		} finally {
+			long start = Metrics.start();
+			outputs.close();
+			Metrics.stop(Metrics.Stage.SERIALIZE, start);
+			if (failures != null) {
+				failures.close();
+			}
+		}
+		System.out.println(routing != null ? routing : mappingCache);
+		if (failures != null) {
+			System.out.println(failures);
+		}
+		saveSnapshot();
+		Metrics.writeSummary();
 		System.out.println("Finished!");
 	}
 
+	/**
+	 * The files written by the command line.
+	 */
+	private static class Outputs {
+		final List<FragmentSink> sinks = new ArrayList<FragmentSink>();
+		final Set<FragmentSink.Part> parts = EnumSet
+				.noneOf(FragmentSink.Part.class);
+
+		void register(FragmentSink sink) {
+			sinks.add(sink);
+			parts.add(sink.getPart());
+		}
 
-	private Map<String, String> getUniqueGPs(File pathwayDir)
-			throws ConverterException {
-		uniqueGOList = new HashSet<String>();
-		uniquedatanodeList = new HashMap<String, String>();
-		for (File file : pathwayDir.listFiles()) {
-			Pathway pathway = new Pathway();
-			pathway.readFromXml(file, true);
-
-			/*
-			 * Get Data Nodes
-			 */
-			for (PathwayElement node : pathway.getDataObjects()) {
-				if (node.getObjectType() == ObjectType.DATANODE) {
-					// System.out.println(node.getTextLabel());
-					if (!(node.getElementID().isEmpty() || node.getDataSource() == null)) {
-
-						if (node.getDataNodeType().equalsIgnoreCase("GeneProduct")
-								|| node.getDataNodeType().equalsIgnoreCase(
-										"Protein")) {
-							Xref reftoUse = getPrefferedId(node.getDataNodeType(),
-									node.getElementID(), node.getDataSource()
-									.getSystemCode());
-							if (reftoUse.getDataSource().getSystemCode()
-									.equalsIgnoreCase("En")) {
-								uniquedatanodeList.put(reftoUse.getId(),
-										pathway
-										.getMappInfo()
-										.getMapInfoName());
-							}
+		void add(PathwayFragments fragments) throws IOException {
+			for (FragmentSink sink : sinks) {
+				sink.add(fragments);
+			}
+		}
 
-						}
+		/**
+		 * Closes every sink, also when one of them fails.
+		 */
+		void close() throws IOException {
+			IOException failure = null;
+			for (FragmentSink sink : sinks) {
+				try {
+					sink.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
 					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
 
+	/**
+	 * @return the output file of the argument, null if it is missing or "-"
+	 */
+	private static File outputFile(String[] args, int i) {
+		return i < args.length && !"-".equals(args[i]) ? new File(args[i])
+				: null;
+	}
+
+	/**
+	 * Converts every pathway.
+	 */
+	private void convert(List<File> files, Outputs outputs)
+			throws ConverterException {
+		engine.run(files, fragmentTask(), outputHandler(outputs));
+	}
+
+	/**
+	 * Converts every pathway of an archive, or those of the shard, without
+	 * extracting it.
+	 */
+	private void convert(File archiveFile, Shard shard, Outputs outputs)
+			throws IOException, ConverterException {
+		PathwayArchive archive = PathwayArchive.open(archiveFile);
+		if (shard != null) {
+			archive = shard.select(archive);
+		}
+		try {
+			engine.run(archive, fragmentTask(), outputHandler(outputs));
+		} finally {
+			archive.close();
+		}
+	}
+
+	private static ConversionEngine.ResultHandler<PathwayFragments> outputHandler(
+			final Outputs outputs) {
+		return new ConversionEngine.ResultHandler<PathwayFragments>() {
+			@Override
+			public void handle(PathwayFragments fragments) throws IOException {
+				if (fragments == null) {
+					return;
+				}
+				long start = Metrics.start();
+				outputs.add(fragments);
+				Metrics.stop(Metrics.Stage.SERIALIZE, start);
+			}
+		};
+	}
+
+	/**
+	 * Converts only the pathways that are new or changed since the last run
+	 * with the same fragment directory, and builds the outputs from the
+	 * stored fragments of all pathways. The manifest is saved every few
+	 * pathways, so an interrupted run carries on from there.
+	 */
+	private void convertIncremental(List<File> files, final File fragmentDir,
+			Outputs outputs) throws IOException, ConverterException {
+		final ConversionManifest manifest = ConversionManifest.open(fragmentDir,
+				"bridge=" + bridgeFingerprint + " routing=" + (routing != null)
+				+ " mitab=" + mitabVersion
+				+ " expansion=" + expansion + " outputs=" + parts);
+		List<String> keys = new ArrayList<String>(files.size());
+		final List<File> changed = new ArrayList<File>();
+		final List<String> changedKeys = new ArrayList<String>();
+		for (File file : files) {
+			String key = manifest.add(file);
+			keys.add(key);
+			if (!manifest.isConverted(file)) {
+				changed.add(file);
+				changedKeys.add(key);
+			}
+		}
+		System.out.println("Incremental: " + changed.size() + " of "
+				+ files.size() + " pathways to convert, "
+				+ manifest.getRemovedCount() + " removed");
+		final Set<String> failedKeys = new HashSet<String>();
+		final int interval = ConversionManifest.defaultCheckpointInterval();
+		engine.run(changed, fragmentTask(),
+				new ConversionEngine.ResultHandler<PathwayFragments>() {
+			private int next;
+
+			@Override
+			public void handle(PathwayFragments fragments)
+					throws IOException {
+				File file = changed.get(next);
+				String key = changedKeys.get(next++);
+				if (fragments == null) {
+					failedKeys.add(key);
+					return;
+				}
+				long start = Metrics.start();
+				fragments.write(fragmentDir, key);
+				manifest.markConverted(file);
+				if (next % interval == 0) {
+					manifest.checkpoint();
 				}
+				Metrics.stop(Metrics.Stage.SERIALIZE, start);
 			}
+		});
+		long start = Metrics.start();
+		for (String key : keys) {
+			if (!failedKeys.contains(key)) {
+				outputs.add(PathwayFragments.read(fragmentDir, key));
+			}
+		}
+		Metrics.stop(Metrics.Stage.SERIALIZE, start);
+		manifest.save();
+	}
+
+	private ConversionEngine.PathwayTask<PathwayFragments> fragmentTask() {
+		return new ConversionEngine.PathwayTask<PathwayFragments>() {
+			@Override
+			public PathwayFragments convert(PathwayContext ctx)
+					throws ConverterException {
+				try {
+					return convertFragments(ctx);
+				} catch (IOException e) {
+					throw new ConverterException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Everything the command line writes for one pathway.
+	 */
+	PathwayFragments convertFragments(PathwayContext ctx) throws IOException {
+		StringWriter rows = new StringWriter();
+		EdgeList edges = new EdgeList();
+		boolean mitab = parts.contains(FragmentSink.Part.INTERACTIONS);
+		boolean network = parts.contains(FragmentSink.Part.NETWORK);
+		if (mitab && network) {
+			MitabWriter writer = new MitabWriter(rows, mitabVersion);
+			convertPathway(ctx, EdgeList.tee(writer, edges));
+			writer.flush();
+			Metrics.count(Metrics.Counter.INTERACTIONS, writer.getRowCount());
+		} else if (mitab) {
+			MitabWriter writer = new MitabWriter(rows, mitabVersion);
+			convertPathway(ctx, writer);
+			writer.flush();
+			Metrics.count(Metrics.Counter.INTERACTIONS, writer.getRowCount());
+		} else if (network) {
+			convertPathway(ctx, edges);
+		}
+		if (parts.contains(FragmentSink.Part.GENE_PRODUCTS)) {
+			collectGPs(ctx);
 		}
-		return uniquedatanodeList;
+		if (parts.contains(FragmentSink.Part.METABOLITES)) {
+			collectMetabolites(ctx);
+		}
+		if (parts.contains(FragmentSink.Part.GO_ANNOTATIONS)) {
+			collectGOTerms(ctx);
+		}
+		return new PathwayFragments(rows.toString(), ctx.uniquedatanodeList,
+				ctx.metabolites, ctx.goAnnotations, edges.toString());
 	}
 
-	private void getNodeInfo(Pathway pwy) {
-		datanodeIdList = new HashMap<String, String>();
-		datanodeDbList = new HashMap<String, String>();
-		datanodeTypeList = new HashMap<String, String>();
-		datanodeNameList = new HashMap<String, String>();
+	private void collectGPs(PathwayContext ctx) {
+		resolvePreferredIds(ctx);
 		/*
 		 * Get Data Nodes
 		 */
-		for (PathwayElement node : pwy.getDataObjects()) {
+		for (GpmlElement node : ctx.elements) {
 			if (node.getObjectType() == ObjectType.DATANODE) {
-				// System.out.println(node.getTextLabel());
 				if (!(node.getElementID().isEmpty() || node.getDataSource() == null)) {
-					datanodeNameList
-					.put(node.getGraphId(), node.getTextLabel());
-					datanodeIdList.put(node.getGraphId(), node.getElementID());
-					datanodeDbList.put(node.getGraphId(), node.getDataSource()
-							.getSystemCode());
-					datanodeTypeList.put(node.getGraphId(),
-							node.getDataNodeType());
-					Xref reftoUse = getPrefferedId(node.getDataNodeType(),
-							node.getElementID(), node.getDataSource()
-							.getSystemCode());
-					// if
-					// (node.getDataNodeType().equalsIgnoreCase("Metabolite")) {
-					// try {
-					// writerMets.write(pwy.getMappInfo().getMapInfoName()
-					// + "\t" + node.getTextLabel() + "\t"
-					// + reftoUse + "\t" + node.getDataNodeType()
-					// + "\n");
-					// } catch (IOException e) {
-					// // TODO Auto-generated catch block
-					// e.printStackTrace();
-					// }
-					// } else {
-					// try {
-					// writerGenesProts.write(pwy.getMappInfo()
-					// .getMapInfoName()
-					// + "\t"
-					// + node.getTextLabel()
-					// + "\t"
-					// + reftoUse
-					// + "\t" + node.getDataNodeType() + "\n");
-					// } catch (IOException e) {
-					// // TODO Auto-generated catch block
-					// e.printStackTrace();
-					// }
-					// }
 
+					if (node.getDataNodeType().equalsIgnoreCase("GeneProduct")
+							|| node.getDataNodeType().equalsIgnoreCase(
+									"Protein")) {
+						Xref reftoUse = getPrefferedId(ctx, node.getDataNodeType(),
+								node.getElementID(), node.getDataSource()
+								.getSystemCode());
+						if (reftoUse.getDataSource().getSystemCode()
+								.equalsIgnoreCase("En")) {
+							ctx.uniquedatanodeList.put(reftoUse.getId(),
+									PathwayFragments.oneLine(ctx.pathwayName));
+						}
+
+					}
 				}
 
+			}
+		}
+	}
+
+	private void collectMetabolites(PathwayContext ctx) {
+		resolvePreferredIds(ctx);
+		for (GpmlElement node : ctx.elements) {
+			if (node.getObjectType() == ObjectType.DATANODE
+					&& !(node.getElementID().isEmpty() || node.getDataSource() == null)
+					&& node.getDataNodeType().equalsIgnoreCase("Metabolite")) {
+				Xref reftoUse = getPrefferedId(ctx, node.getDataNodeType(),
+						node.getElementID(), node.getDataSource()
+						.getSystemCode());
+				ctx.metabolites.add(PathwayFragments.oneLine(ctx.pathwayName)
+						+ "\t" + PathwayFragments.oneLine(node.getTextLabel())
+						+ "\t" + reftoUse + "\t" + node.getDataNodeType());
+			}
+		}
+	}
 
+	private void getNodeInfo(PathwayContext ctx) {
+		resolvePreferredIds(ctx);
+		int nodes = 0;
+		/*
+		 * Get Data Nodes
+		 */
+		for (GpmlElement node : ctx.elements) {
+			if (node.getObjectType() == ObjectType.DATANODE) {
+				nodes++;
+				if (!(node.getElementID().isEmpty() || node.getDataSource() == null)) {
+					ctx.datanodes.put(node.getGraphId(), node);
+				}
 			}
 		}
+		Metrics.count(Metrics.Counter.NODES, nodes);
 	}
 
 
-	private void convertInter(Pathway pathway, PathwayElement pwe,
-			BufferedWriter writerInters)
-	{
-		// String interaction = "";
+	private void convertInter(PathwayContext ctx, GpmlElement pwe,
+			InteractionSink writerInters) throws IOException {
 		/*
 		 * Line is connected to nodes on both sides
 		 */
@@ -269,121 +441,90 @@ public class Interactions implements PathwayExporter {
 			String startGraphRef = pwe.getStartGraphRef();
 			String endGraphRef = pwe.getEndGraphRef();
 
-			if (!(datanodeTypeList.get(startGraphRef) == null || datanodeTypeList
+			if (!(ctx.datanodes.get(startGraphRef) == null || ctx.datanodes
 					.get(endGraphRef) == null)) {
-				Xref sourceReftoUse = getPrefferedId(
-						datanodeTypeList.get(startGraphRef),
-						datanodeIdList.get(startGraphRef),
-						datanodeDbList.get(startGraphRef));
-				Xref targetReftoUse = getPrefferedId(
-						datanodeTypeList.get(endGraphRef),
-						datanodeIdList.get(endGraphRef),
-						datanodeDbList.get(endGraphRef));
-				System.out.println("hello"
-						+ pathway.getMappInfo().getMapInfoName()
-						+ "\t" + datanodeNameList.get(startGraphRef) + "\t"
-						+ sourceReftoUse + "\t"
-						+ datanodeTypeList.get(startGraphRef) + "\t"
-						+ pwe.getStartLineType() + "\t"
-						+ datanodeNameList.get(endGraphRef) + "\t"
-						+ targetReftoUse + "\t"
-						+ datanodeTypeList.get(endGraphRef) + "\t"
-						+ pwe.getEndLineType() + "\n");
-				try {
-					writerInters.write(pathway.getMappInfo().getMapInfoName()
-							+ "\t" + datanodeNameList.get(startGraphRef) + "\t"
-							+ sourceReftoUse + "\t"
-							+ datanodeTypeList.get(startGraphRef) + "\t"
-							+ pwe.getStartLineType() + "\t"
-							+ datanodeNameList.get(endGraphRef) + "\t"
-							+ targetReftoUse + "\t"
-							+ datanodeTypeList.get(endGraphRef) + "\t"
-							+ pwe.getEndLineType() + "\n");
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+				Participant source = getParticipant(ctx, startGraphRef);
+				Participant target = getParticipant(ctx, endGraphRef);
+				writerInters.writeInteraction(ctx.pathwayName, ctx.organism,
+						source, target,
+						MiTerms.interactionType(pwe.getEndLineType()), null,
+						null, pwe.getEndLineType());
 			}
 		}
-		// return interaction;
 	}
 
-	private void getComplexInfo(Pathway pwy) {
-		complexIdList = new ArrayList<String>();
-		for (PathwayElement pwe : pwy.getDataObjects()) {
-			if (pwe.getObjectType() == ObjectType.GROUP
-					&& pwe.getGroupStyle() == GroupStyle.COMPLEX
-					&& pwe.getGroupId() != null) {
-				System.out.println("GroupID = " + pwe.getGroupId());
-				System.out.println("complexes = " + complexIdList);
-				complexIdList.add(pwe.getGroupId());
-			}
-		}
-		System.out.println("complexes = " + complexIdList);
-		if (complexIdList != null) {
-			getComplexComponents(pwy);
-		}
-	}
-
-	private void getComplexComponents(Pathway pwy) {
-		complexTypeMap = new ArrayList<String>();
-		complexIdMap = new ArrayList<String>();
-		complexDbMap = new ArrayList<String>();
-		for (String complexId : complexIdList) {
-			System.out.println("complexID" + complexId);
-			for (PathwayElement pwe : pwy.getDataObjects()) {
-				/*
-				 * Getting complex components
-				 */
-				if (pwe.getObjectType() == ObjectType.DATANODE
-						&& pwe.getGroupRef() != null
-						&& pwe.getGroupRef().equalsIgnoreCase(complexId)) {
-					System.out.println("GroupRef = " + pwe.getGroupRef());
-					if (!(pwe.getElementID().isEmpty() || pwe.getDataSource() == null)) {
-						complexTypeMap.add(pwe.getTextLabel());
-						complexTypeMap.add(pwe.getDataNodeType());
-						complexIdMap.add(pwe.getElementID());
-						complexDbMap.add(pwe.getDataSource().getSystemCode());
-					}
-				}
-			}
+	private static Participant getParticipant(PathwayContext ctx,
+			String graphRef) {
+		GpmlElement node = ctx.datanodes.get(graphRef);
+		String type = node.getDataNodeType();
+		String id = node.getElementID();
+		String db = node.getDataSource().getSystemCode();
+		return new Participant(node.getTextLabel(), type,
+				getPrefferedId(ctx, type, id, db), new Xref(id,
+						DataSource.getBySystemCode(db)));
+	}
 
+	private void getComplexInfo(PathwayContext ctx) {
+		resolvePreferredIds(ctx);
+		/*
+		 * Getting complex components, nested complexes included
+		 */
+		ComplexIndex index = new ComplexIndex(ctx);
+		for (String complexId : index.getComplexIds()) {
+			ctx.complexes.put(complexId, index.getMembers(complexId));
 		}
 	}
 
-	private void convertComplexToInteractions(Pathway pathway,
-			BufferedWriter writer)
+	private void convertComplexToInteractions(PathwayContext ctx,
+			InteractionSink writer)
 					throws IOException {
-		String interaction = "";
-		for (int i = 0; i < complexTypeMap.size(); i++) {
-			/*
-			 * Get Interactor A Details [Start from Beginning of map]
-			 */
-			Xref sourceReftoUse = getPrefferedId(complexTypeMap.get(i),
-					complexIdMap.get(i), complexDbMap.get(i));
-
-			for (int j = complexTypeMap.size() - 1; j > 1; j--) {
-				Xref targetReftoUse = getPrefferedId(complexTypeMap.get(j),
-						complexIdMap.get(j), complexDbMap.get(j));
-				interaction = pathway.getMappInfo().getMapInfoName() + "\t" +
-						complexNameMap.get(i) + "\t" + sourceReftoUse + "\t"
-						+ complexTypeMap.get(i) + "\t" + "Covalent Binding"
-						+ "\t" + complexNameMap.get(j) + "\t" + targetReftoUse
-						+ "\t" + complexTypeMap.get(j)
-						+ "\t" + "Covalent Binding" + "\n";
-				writer.write(interaction);
-			}
+		for (Map.Entry<String, List<Participant>> complex : ctx.complexes
+				.entrySet()) {
+			expansion.write(ctx.pathwayName, ctx.organism, complex.getKey(),
+					complex.getValue(), writer);
 		}
+	}
 
+	/**
+	 * Writes the interactions and the complexes of one pathway.
+	 */
+	void convertPathway(PathwayContext ctx, InteractionSink writer)
+			throws IOException {
+		convertPathway(ctx, writer, null);
 	}
 
-	private static Xref getPrefferedId(String type, String id, String db) {
-		if (db == null) {
-			db = "ck";
+	/**
+	 * @param pk
+	 *            reports progress per element and is checked for
+	 *            cancellation, may be null
+	 */
+	void convertPathway(PathwayContext ctx, InteractionSink writer,
+			ProgressKeeper pk) throws IOException {
+		if (pk != null) {
+			pk.setTaskName("Mapping identifiers");
 		}
-		DataSource origds = DataSource.getBySystemCode(db);
-		Xref Ref = new Xref(id, origds);
+		getNodeInfo(ctx);
+		if (pk != null) {
+			pk.setTaskName("Writing interactions");
+		}
+		long start = Metrics.start();
+		for (GpmlElement pwe : ctx.elements) {
+			if (pk != null) {
+				if (pk.isCancelled()) {
+					throw new CancellationException();
+				}
+				pk.worked(1);
+			}
+			if (pwe.getObjectType() == ObjectType.LINE) {
+				convertInter(ctx, pwe, writer);
+			}
+		}
+		getComplexInfo(ctx);
+		convertComplexToInteractions(ctx, writer);
+		Metrics.stop(Metrics.Stage.EXPAND, start);
+	}
 
+	private static DataSource getPrefferedDataSource(String type) {
 		DataSource prefds;
 		if (type.equalsIgnoreCase("Metabolite")) {
 			prefds = DataSource.getBySystemCode("Ch");
@@ -394,97 +535,277 @@ public class Interactions implements PathwayExporter {
 		else {
 			prefds = DataSource.getBySystemCode("En");
 		}
+		return prefds;
+	}
+
+	/**
+	 * Maps all data nodes of the pathway to their preferred DataSource before
+	 * any row is built, with one bulk lookup per source and target
+	 * DataSource instead of one lookup per node.
+	 */
+	static void resolvePreferredIds(PathwayContext ctx) {
+		if (ctx.preferredIdsResolved) {
+			return;
+		}
+		ctx.preferredIdsResolved = true;
+		long start = Metrics.start();
+		/* target DataSource -> source DataSource -> Xrefs */
+		Map<DataSource, Map<DataSource, Set<Xref>>> groups = new LinkedHashMap<DataSource, Map<DataSource, Set<Xref>>>();
+		for (GpmlElement node : ctx.elements) {
+			if (node.getObjectType() == ObjectType.DATANODE
+					&& !(node.getElementID().isEmpty() || node.getDataSource() == null)) {
+				DataSource origds = DataSource.getBySystemCode(node
+						.getDataSource().getSystemCode());
+				DataSource prefds = getPrefferedDataSource(node
+						.getDataNodeType());
+				if (!origds.equals(prefds)) {
+					Map<DataSource, Set<Xref>> bySource = groups.get(prefds);
+					if (bySource == null) {
+						bySource = new LinkedHashMap<DataSource, Set<Xref>>();
+						groups.put(prefds, bySource);
+					}
+					Set<Xref> refs = bySource.get(origds);
+					if (refs == null) {
+						refs = new LinkedHashSet<Xref>();
+						bySource.put(origds, refs);
+					}
+					refs.add(new Xref(node.getElementID(), origds));
+				}
+			}
+		}
+		for (Map.Entry<DataSource, Map<DataSource, Set<Xref>>> group : groups
+				.entrySet()) {
+			for (Set<Xref> refs : group.getValue().values()) {
+				Map<Xref, Set<Xref>> mapped = resolve(ctx, refs,
+						group.getKey());
+				if (Metrics.ENABLED && mapped != null) {
+					int unmapped = 0;
+					for (Set<Xref> found : mapped.values()) {
+						if (found.isEmpty()) {
+							unmapped++;
+						}
+					}
+					Metrics.count(Metrics.Counter.UNMAPPED_XREFS, unmapped);
+				}
+			}
+		}
+		Metrics.stop(Metrics.Stage.MAP, start);
+	}
+
+	/**
+	 * @return the lookups, or null if they failed
+	 */
+	private static Map<Xref, Set<Xref>> resolve(PathwayContext ctx,
+			Set<Xref> refs, DataSource tgt) {
+		try {
+			Map<Xref, Set<Xref>> mapped = mappings(ctx).mapID(refs, tgt);
+			ctx.putMapped(tgt, mapped);
+			return mapped;
+		} catch (IDMapperException e) {
+			/* left to the single lookups, which report it per Xref */
+			if (failures == null) {
+				e.printStackTrace();
+			}
+			return null;
+		}
+	}
+
+	private static void mappingFailed(PathwayContext ctx,
+			IDMapperException e) {
+		if (failures != null) {
+			failures.mappingError(ctx.pathwayName, e);
+		} else {
+			e.printStackTrace();
+		}
+	}
+
+	private static MappingCache mappings(PathwayContext ctx) {
+		if (ctx.mappingCache == null) {
+			ctx.mappingCache = routing != null ? routing
+					.forOrganism(ctx.organism) : mappingCache;
+		}
+		return ctx.mappingCache;
+	}
+
+	private static Set<Xref> mapID(PathwayContext ctx, Xref ref,
+			DataSource tgt) throws IDMapperException {
+		Set<Xref> newRefs = ctx.getMapped(ref, tgt);
+		if (newRefs == null) {
+			newRefs = mappings(ctx).mapID(ref, tgt);
+		}
+		return newRefs;
+	}
+
+	static Xref getPrefferedId(PathwayContext ctx, String type,
+			String id, String db) {
+		if (db == null) {
+			db = "ck";
+		}
+		DataSource origds = DataSource.getBySystemCode(db);
+		Xref Ref = new Xref(id, origds);
+
+		DataSource prefds = getPrefferedDataSource(type);
 
 		if (!origds.equals(prefds)) {
 
 			// Lookup the cross-references for the wanted database code
 			try {
-				Set<Xref> newRefs = loadedGdbs.mapID(Ref, prefds);
+				Set<Xref> newRefs = mapID(ctx, Ref, prefds);
 				if (!newRefs.isEmpty()) {
-					// System.out.println(newRefs.toArray());
 					Ref = newRefs.iterator().next();
 				}
 
 			} catch (IDMapperException e) {
-				e.printStackTrace();
+				mappingFailed(ctx, e);
 			}
 		}
 		return Ref;
 	}
 
-	private Set<String> getUniqueGOTerms(File pathwayDir)
-			throws ConverterException {
-		uniqueGOList = new HashSet<String>();
-		for (File file : pathwayDir.listFiles()) {
-			Pathway pathway = new Pathway();
-			pathway.readFromXml(file, true);
-			/*
-			 * Get Data Nodes
-			 */
-			for (PathwayElement node : pathway.getDataObjects()) {
-				if (node.getObjectType() == ObjectType.DATANODE) {
-					// System.out.println(node.getTextLabel());
-					if (!(node.getElementID().isEmpty() || node.getDataSource() == null)) {
-
-						if (node.getDataNodeType().equalsIgnoreCase("GeneProduct")
-								|| node.getDataNodeType().equalsIgnoreCase(
-										"Protein")) {
-							Xref reftoUse = getPrefferedId(
-									node.getDataNodeType(),
-									node.getElementID(), node.getDataSource()
-									.getSystemCode());
-							if (reftoUse.getDataSource().getSystemCode()
-									.equalsIgnoreCase("En")) {
-								Xref ref = new Xref(reftoUse.getId(),
-										DataSource.getBySystemCode("En"));
-
-								DataSource gods = DataSource.getBySystemCode("T");
-								// Lookup GO terms
-								try {
-									Set<Xref> newRefs = loadedGdbs.mapID(ref, gods);
-									if (!newRefs.isEmpty()) {
-										// System.out.println(newRefs.toArray());
-										Object[] goRefs = newRefs.toArray();
-										for (int i = 0; i < newRefs.size(); i++) {
-											System.out.println(goRefs[i]);
-											uniqueGOList.add(goRefs[i]
-													.toString());
-										}
-									}
-
-								} catch (IDMapperException e) {
-									e.printStackTrace();
+	private void collectGOTerms(PathwayContext ctx) {
+		resolvePreferredIds(ctx);
+		long start = Metrics.start();
+		resolveGOTerms(ctx);
+		Metrics.stop(Metrics.Stage.MAP, start);
+		/*
+		 * Get Data Nodes
+		 */
+		for (GpmlElement node : ctx.elements) {
+			if (node.getObjectType() == ObjectType.DATANODE) {
+				if (!(node.getElementID().isEmpty() || node.getDataSource() == null)) {
+
+					if (node.getDataNodeType().equalsIgnoreCase("GeneProduct")
+							|| node.getDataNodeType().equalsIgnoreCase(
+									"Protein")) {
+						Xref reftoUse = getPrefferedId(ctx,
+								node.getDataNodeType(),
+								node.getElementID(), node.getDataSource()
+								.getSystemCode());
+						if (reftoUse.getDataSource().getSystemCode()
+								.equalsIgnoreCase("En")) {
+							Xref ref = new Xref(reftoUse.getId(),
+									DataSource.getBySystemCode("En"));
+
+							DataSource gods = DataSource.getBySystemCode("T");
+							// Lookup GO terms
+							try {
+								Set<Xref> newRefs = mapID(ctx, ref, gods);
+								for (Xref goRef : newRefs) {
+									ctx.goAnnotations.add(PathwayFragments
+											.oneLine(ctx.pathwayName)
+											+ "\t"
+											+ ref.getId()
+											+ "\t"
+											+ goRef.getId());
 								}
-							}
 
+							} catch (IDMapperException e) {
+								mappingFailed(ctx, e);
+							}
 						}
-					}
 
+					}
 				}
+
 			}
 		}
+	}
 
-		return uniqueGOList;
-
+	/**
+	 * Looks up the GO terms of all Ensembl genes of the pathway in one bulk
+	 * call, once their preferred ids are known.
+	 */
+	private static void resolveGOTerms(PathwayContext ctx) {
+		DataSource ensds = DataSource.getBySystemCode("En");
+		Set<Xref> refs = new LinkedHashSet<Xref>();
+		for (GpmlElement node : ctx.elements) {
+			if (node.getObjectType() == ObjectType.DATANODE
+					&& !(node.getElementID().isEmpty() || node.getDataSource() == null)
+					&& (node.getDataNodeType().equalsIgnoreCase("GeneProduct") || node
+							.getDataNodeType().equalsIgnoreCase("Protein"))) {
+				Xref reftoUse = getPrefferedId(ctx, node.getDataNodeType(),
+						node.getElementID(), node.getDataSource()
+						.getSystemCode());
+				if (reftoUse.getDataSource().getSystemCode()
+						.equalsIgnoreCase("En")) {
+					refs.add(new Xref(reftoUse.getId(), ensds));
+				}
+			}
+		}
+		if (!refs.isEmpty()) {
+			resolve(ctx, refs, DataSource.getBySystemCode("T"));
+		}
 	}
 
-	private void loadIdMappers(String dbDirName) {
+	static void loadIdMappers(String dbDirName) {
 		/* Load identifier mapping databases */
 		System.out.println("Loading bridge files");
 		loadedGdbs = new IDMapperStack();
 		List<File> bridgeFiles = FileUtils.getFiles(new File(dbDirName),
 				"bridge", true);
-		for (File dbFile : bridgeFiles) {
-			try {
-				Class.forName("org.bridgedb.rdb.IDMapperRdb");
-				IDMapper gdb = BridgeDb.connect("idmapper-pgdb:" + dbFile);
-				loadedGdbs.addIDMapper(gdb);
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
-			} catch (IDMapperException e) {
-				e.printStackTrace();
+		bridgeFingerprint = MappingSnapshot.fingerprint(bridgeFiles);
+		MappingSnapshot snapshot = openSnapshot();
+		mappingCache = new MappingCache(loadedGdbs, MappingCache.defaultSize(),
+				snapshot, snapshotBuilder);
+		Map<File, IDMapper> gdbs;
+		if (snapshot != null || BridgeFiles.defaultLazy()) {
+			/* opened when first queried, e.g. for an Xref the snapshot lacks */
+			gdbs = new LinkedHashMap<File, IDMapper>();
+			for (File dbFile : bridgeFiles) {
+				gdbs.put(dbFile, new LazyIDMapper(dbFile));
+			}
+		} else {
+			gdbs = BridgeFiles.openAll(bridgeFiles,
+					BridgeFiles.defaultThreads());
+		}
+		for (Map.Entry<File, IDMapper> gdb : gdbs.entrySet()) {
+			/* each database is locked on its own, not all of them at once */
+			gdb.setValue(new SynchronizedIDMapper(gdb.getValue()));
+			loadedGdbs.addIDMapper(gdb.getValue());
+		}
+		routing = SpeciesRouting.defaultEnabled() ? new SpeciesRouting(
+				mappingCache, gdbs, snapshot, snapshotBuilder)
+				: null;
+	}
+
+	/**
+	 * Opens the mapping snapshot set with <code>psimi.snapshot</code>. If it
+	 * is missing or out of date with the bridge files, the lookups of this
+	 * run are collected to build a new one; otherwise the lookups it lacks
+	 * are collected and added to it.
+	 */
+	private static MappingSnapshot openSnapshot() {
+		snapshotBuilder = null;
+		File snapshotFile = MappingSnapshot.defaultFile();
+		if (snapshotFile == null) {
+			return null;
+		}
+		try {
+			MappingSnapshot snapshot = MappingSnapshot.open(snapshotFile,
+					bridgeFingerprint);
+			if (snapshot != null) {
+				System.out.println("Mapping snapshot: " + snapshotFile + " ("
+						+ snapshot.size() + " entries)");
+				snapshotBuilder = new MappingSnapshot.Builder(
+						bridgeFingerprint, snapshot);
+				return snapshot;
 			}
-			System.out.println("Bridge file: " + dbFile.getName() + " loaded.");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("Mapping snapshot: " + snapshotFile
+				+ " missing or out of date, rebuilding");
+		snapshotBuilder = new MappingSnapshot.Builder(bridgeFingerprint);
+		return null;
+	}
+
+	static void saveSnapshot() throws IOException {
+		File snapshotFile = MappingSnapshot.defaultFile();
+		if (snapshotBuilder != null && snapshotFile != null
+				&& snapshotBuilder.hasChanges()) {
+			System.out.println("Mapping snapshot: " + snapshotBuilder.size()
+					+ " new entries written to " + snapshotFile);
+			snapshotBuilder.write(snapshotFile);
 		}
 	}
 
@@ -505,7 +826,39 @@ public class Interactions implements PathwayExporter {
 
 	@Override
 	public void doExport(File file, Pathway pathway) throws ConverterException {
-		// TODO Auto-generated method stub
+		PathwayContext ctx = PathwayContext.fromPathway(pathway);
+		doExport(file, ctx, new ProgressKeeper(ctx.elements.size()));
+	}
 
+	/**
+	 * Writes the interactions and complexes of the pathway as MITAB.
+	 */
+	@Override
+	public void doExport(File file, PathwayContext ctx, ProgressKeeper pk)
+			throws ConverterException {
+		if (mappings(ctx) == null) {
+			throw new ConverterException(
+					"No identifier mapping databases loaded");
+		}
+		try {
+			MitabWriter writer = new MitabWriter(new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(file), "UTF-8")),
+					mitabVersion);
+			boolean done = false;
+			try {
+				writer.writeHeader();
+				convertPathway(ctx, writer, pk);
+				Metrics.count(Metrics.Counter.INTERACTIONS,
+						writer.getRowCount());
+				done = true;
+			} finally {
+				writer.close();
+				if (!done) {
+					file.delete();
+				}
+			}
+		} catch (IOException e) {
+			throw new ConverterException(e);
+		}
 	}
 }
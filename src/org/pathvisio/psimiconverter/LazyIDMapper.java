@@ -0,0 +1,140 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * A bridge database that is only connected the first time it is queried.
+ * When all lookups are answered from the cache or a {@link MappingSnapshot}
+ * the database is never opened.
+ *
+ * @author anwesha
+ *
+ */
+public class LazyIDMapper implements IDMapper {
+
+	private final File dbFile;
+	private IDMapper gdb;
+	private boolean closed;
+	/* the database could not be opened, it is left out like in openAll */
+	private boolean failed;
+
+	public LazyIDMapper(File dbFile) {
+		this.dbFile = dbFile;
+	}
+
+	public File getFile() {
+		return dbFile;
+	}
+
+	/**
+	 * @return the opened database, or null if it failed to open
+	 */
+	private synchronized IDMapper connect() throws IDMapperException {
+		if (closed) {
+			throw new IDMapperException("Bridge file " + dbFile.getName()
+					+ " is closed");
+		}
+		if (gdb == null && !failed) {
+			try {
+				gdb = BridgeFiles.open(dbFile);
+			} catch (IDMapperException e) {
+				failed = true;
+				System.out.println("Bridge file: " + dbFile.getName()
+						+ " failed to open");
+				e.printStackTrace();
+			}
+		}
+		return gdb;
+	}
+
+	@Override
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs,
+			DataSource... tgtDataSources) throws IDMapperException {
+		IDMapper mapper = connect();
+		if (mapper == null) {
+			return Collections.emptyMap();
+		}
+		return mapper.mapID(srcXrefs, tgtDataSources);
+	}
+
+	@Override
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources)
+			throws IDMapperException {
+		IDMapper mapper = connect();
+		if (mapper == null) {
+			return Collections.emptySet();
+		}
+		return mapper.mapID(ref, tgtDataSources);
+	}
+
+	@Override
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		IDMapper mapper = connect();
+		return mapper != null && mapper.xrefExists(xref);
+	}
+
+	@Override
+	public Set<Xref> freeSearch(String text, int limit)
+			throws IDMapperException {
+		IDMapper mapper = connect();
+		if (mapper == null) {
+			return Collections.emptySet();
+		}
+		return mapper.freeSearch(text, limit);
+	}
+
+	@Override
+	public IDMapperCapabilities getCapabilities() {
+		try {
+			IDMapper mapper = connect();
+			return mapper == null ? null : mapper.getCapabilities();
+		} catch (IDMapperException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reports true until closed or found broken, so that an
+	 * {@link org.bridgedb.IDMapperStack} keeps querying it before the
+	 * database is actually opened.
+	 */
+	@Override
+	public synchronized boolean isConnected() {
+		return !closed && !failed;
+	}
+
+	@Override
+	public synchronized void close() throws IDMapperException {
+		closed = true;
+		if (gdb != null) {
+			gdb.close();
+			gdb = null;
+		}
+	}
+}
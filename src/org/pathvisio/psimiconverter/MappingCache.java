@@ -0,0 +1,255 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * Bounded least-recently-used cache in front of an {@link IDMapper}. Lookups
+ * are keyed on the source Xref and the target DataSource. Xrefs that map to
+ * nothing are cached as well, as an empty set.
+ *
+ * @author anwesha
+ *
+ */
+public class MappingCache {
+
+	private final IDMapper mapper;
+	private final String namespace;
+	private final MappingSnapshot snapshot;
+	private final MappingSnapshot.Builder recorder;
+	private final Map<Key, Set<Xref>> cache;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong snapshotHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public MappingCache(IDMapper mapper, int maxEntries) {
+		this(mapper, maxEntries, null, null);
+	}
+
+	/**
+	 * @param snapshot
+	 *            answers lookups before the mapper is asked, may be null
+	 * @param recorder
+	 *            receives every lookup done on the mapper, may be null
+	 */
+	public MappingCache(IDMapper mapper, int maxEntries,
+			MappingSnapshot snapshot, MappingSnapshot.Builder recorder) {
+		this(mapper, maxEntries, snapshot, recorder, "");
+	}
+
+	/**
+	 * @param namespace
+	 *            keeps the snapshot entries of this cache apart from those
+	 *            of caches in front of other databases
+	 */
+	public MappingCache(IDMapper mapper, final int maxEntries,
+			MappingSnapshot snapshot, MappingSnapshot.Builder recorder,
+			String namespace) {
+		this.mapper = mapper;
+		this.namespace = namespace;
+		this.snapshot = snapshot;
+		this.recorder = recorder;
+		this.cache = new LinkedHashMap<Key, Set<Xref>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Set<Xref>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Maximum number of cached lookups, set with the
+	 * <code>psimi.cache.size</code> system property.
+	 */
+	public static int defaultSize() {
+		return Integer.getInteger("psimi.cache.size", 100000);
+	}
+
+	/**
+	 * Same as {@link IDMapper#mapID(Xref, DataSource...)} for a single target
+	 * DataSource. The returned set is read-only.
+	 */
+	public Set<Xref> mapID(Xref ref, DataSource tgt) throws IDMapperException {
+		Key key = new Key(ref, tgt);
+		Set<Xref> result = lookup(key);
+		if (result != null) {
+			return result;
+		}
+		/*
+		 * The cache is not locked while the database is queried, so hits
+		 * from other workers do not wait for it. A bridge database that can
+		 * only answer one query at a time is a SynchronizedIDMapper.
+		 */
+		countMisses(1);
+		long start = Metrics.start();
+		Set<Xref> mapped = mapper.mapID(ref, tgt);
+		Metrics.mapIdCall(start);
+		return store(key, mapped);
+	}
+
+	/**
+	 * Same as {@link IDMapper#mapID(Collection, DataSource...)} for a single
+	 * target DataSource. Xrefs that are not cached are resolved together in
+	 * one call on the mapper. Every source Xref is a key of the returned map,
+	 * with an empty set if it does not map.
+	 */
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> refs, DataSource tgt)
+			throws IDMapperException {
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		Set<Xref> todo = new LinkedHashSet<Xref>();
+		for (Xref ref : refs) {
+			if (!result.containsKey(ref)) {
+				Set<Xref> known = lookup(new Key(ref, tgt));
+				if (known != null) {
+					result.put(ref, known);
+				} else {
+					todo.add(ref);
+				}
+			}
+		}
+		if (todo.isEmpty()) {
+			return result;
+		}
+		countMisses(todo.size());
+		long start = Metrics.start();
+		Map<Xref, Set<Xref>> mapped = mapper.mapID(todo, tgt);
+		Metrics.mapIdCall(start);
+		for (Xref ref : todo) {
+			Set<Xref> found = mapped.get(ref);
+			result.put(ref, store(new Key(ref, tgt),
+					found == null ? Collections.<Xref> emptySet() : found));
+		}
+		return result;
+	}
+
+	/**
+	 * Looks in the cache and then the snapshot, returns null if the mapper
+	 * has to be asked.
+	 */
+	private Set<Xref> lookup(Key key) {
+		Set<Xref> result;
+		synchronized (cache) {
+			result = cache.get(key);
+		}
+		if (result != null) {
+			hits.incrementAndGet();
+			Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+			return result;
+		}
+		if (snapshot != null) {
+			result = snapshot.mapID(namespace, key.ref, key.tgt);
+			if (result != null) {
+				snapshotHits.incrementAndGet();
+				Metrics.count(Metrics.Counter.SNAPSHOT_HITS, 1);
+				synchronized (cache) {
+					cache.put(key, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts lookups the mapper is queried for.
+	 */
+	private void countMisses(int count) {
+		misses.addAndGet(count);
+		Metrics.count(Metrics.Counter.CACHE_MISSES, count);
+	}
+
+	private Set<Xref> store(Key key, Set<Xref> mapped) {
+		Set<Xref> result = mapped.isEmpty() ? Collections.<Xref> emptySet()
+				: Collections.unmodifiableSet(new LinkedHashSet<Xref>(mapped));
+		if (recorder != null) {
+			recorder.add(namespace, key.ref, key.tgt, result);
+		}
+		synchronized (cache) {
+			cache.put(key, result);
+		}
+		return result;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getSnapshotHits() {
+		return snapshotHits.get();
+	}
+
+	/**
+	 * @return lookups the mapper was queried for
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Mapping cache: " + getHits() + " hits, " + getSnapshotHits()
+				+ " snapshot hits, " + getMisses() + " misses, " + size() + " entries";
+	}
+
+	/**
+	 * Cache key, a source Xref and the DataSource it is mapped to.
+	 */
+	private static final class Key {
+		private final Xref ref;
+		private final DataSource tgt;
+
+		Key(Xref ref, DataSource tgt) {
+			this.ref = ref;
+			this.tgt = tgt;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * ref.hashCode() + (tgt == null ? 0 : tgt.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return ref.equals(other.ref)
+					&& (tgt == null ? other.tgt == null : tgt.equals(other.tgt));
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+
+/**
+ * Precomputed identifier mappings, stored in a memory mapped file so that a
+ * warm run does not have to query the bridge databases at all.
+ * <p>
+ * The file holds a header, a table of record offsets sorted on the record
+ * keys, and the records themselves. A key is
+ * <code>namespace \t target \t source \t id</code>, where the namespace
+ * names the bridge databases that answered (see {@link SpeciesRouting}),
+ * and its record lists the ids it maps to in the target DataSource (none
+ * for Xrefs that do not map). The header
+ * carries a fingerprint of the bridge files the snapshot was built from; a
+ * snapshot whose fingerprint does not match the current bridge files is
+ * ignored.
+ *
+ * @author anwesha
+ *
+ */
+public class MappingSnapshot {
+
+	private static final int MAGIC = 0x50534d53; // PSMS
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+	private final int count;
+
+	private MappingSnapshot(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.count = buffer.getInt(16);
+	}
+
+	/**
+	 * Snapshot file configured with the <code>psimi.snapshot</code> system
+	 * property, or null if snapshots are not used.
+	 */
+	public static File defaultFile() {
+		String name = System.getProperty("psimi.snapshot");
+		return name == null ? null : new File(name);
+	}
+
+	/**
+	 * Fingerprint of a set of bridge files, based on their paths, sizes and
+	 * modification times.
+	 */
+	public static long fingerprint(List<File> bridgeFiles) {
+		List<File> sorted = new ArrayList<File>(bridgeFiles);
+		Collections.sort(sorted);
+		long hash = VERSION;
+		for (File file : sorted) {
+			hash = 31 * hash + file.getAbsolutePath().hashCode();
+			hash = 31 * hash + file.length();
+			hash = 31 * hash + file.lastModified();
+		}
+		return hash;
+	}
+
+	/**
+	 * Maps a snapshot file into memory.
+	 *
+	 * @return the snapshot, or null if the file does not exist or was built
+	 *         from different bridge files
+	 */
+	public static MappingSnapshot open(File file, long fingerprint)
+			throws IOException {
+		if (!file.isFile() || file.length() < HEADER_SIZE) {
+			return null;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer buffer = raf.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+					|| buffer.getLong(8) != fingerprint) {
+				return null;
+			}
+			return new MappingSnapshot(buffer);
+		} finally {
+			/* the mapping stays valid after the channel is closed */
+			raf.close();
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Looks up the mapping of an Xref to a target DataSource.
+	 *
+	 * @return the mapped Xrefs, an empty set if the Xref is known not to map,
+	 *         or null if the snapshot does not contain the Xref
+	 */
+	public Set<Xref> mapID(String namespace, Xref ref, DataSource tgt) {
+		byte[] key = key(namespace, ref, tgt);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = buffer.getInt(HEADER_SIZE + 4 * mid);
+			int cmp = compareKey(offset, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return readValues(offset + 2 + key.length, tgt);
+			}
+		}
+		return null;
+	}
+
+	private int compareKey(int offset, byte[] key) {
+		int length = buffer.getShort(offset) & 0xffff;
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = (buffer.get(offset + 2 + i) & 0xff) - (key[i] & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return length - key.length;
+	}
+
+	private Set<Xref> readValues(int offset, DataSource tgt) {
+		int values = buffer.getShort(offset) & 0xffff;
+		if (values == 0) {
+			return Collections.emptySet();
+		}
+		Set<Xref> result = new LinkedHashSet<Xref>();
+		int pos = offset + 2;
+		for (int i = 0; i < values; i++) {
+			int length = buffer.getShort(pos) & 0xffff;
+			byte[] id = new byte[length];
+			for (int j = 0; j < length; j++) {
+				id[j] = buffer.get(pos + 2 + j);
+			}
+			result.add(new Xref(new String(id, UTF8), tgt));
+			pos += 2 + length;
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	private static byte[] key(String namespace, Xref ref, DataSource tgt) {
+		return (namespace + "\t" + code(tgt) + "\t"
+				+ code(ref.getDataSource()) + "\t" + ref.getId())
+				.getBytes(UTF8);
+	}
+
+	private static String code(DataSource ds) {
+		if (ds == null) {
+			return "";
+		}
+		return ds.getSystemCode() != null ? ds.getSystemCode() : ds
+				.getFullName();
+	}
+
+	/**
+	 * Passes every record to the builder, for a snapshot that is extended.
+	 */
+	private void copyTo(Builder builder) {
+		for (int i = 0; i < count; i++) {
+			int offset = buffer.getInt(HEADER_SIZE + 4 * i);
+			int keyLength = buffer.getShort(offset) & 0xffff;
+			String key = string(offset + 2, keyLength);
+			int pos = offset + 2 + keyLength;
+			int values = buffer.getShort(pos) & 0xffff;
+			pos += 2;
+			List<String> ids = new ArrayList<String>(values);
+			for (int j = 0; j < values; j++) {
+				int length = buffer.getShort(pos) & 0xffff;
+				ids.add(string(pos + 2, length));
+				pos += 2 + length;
+			}
+			builder.entries.putIfAbsent(key, ids);
+		}
+	}
+
+	private String string(int offset, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Collects the lookups of a run and writes them as a snapshot.
+	 */
+	public static class Builder {
+
+		private final long fingerprint;
+		private final MappingSnapshot base;
+		private final ConcurrentHashMap<String, List<String>> entries = new ConcurrentHashMap<String, List<String>>();
+
+		public Builder(long fingerprint) {
+			this(fingerprint, null);
+		}
+
+		/**
+		 * @param base
+		 *            snapshot whose entries are written along with the new
+		 *            ones, may be null
+		 */
+		public Builder(long fingerprint, MappingSnapshot base) {
+			this.fingerprint = fingerprint;
+			this.base = base;
+		}
+
+		public void add(String namespace, Xref ref, DataSource tgt,
+				Set<Xref> mapped) {
+			List<String> ids = new ArrayList<String>(mapped.size());
+			for (Xref xref : mapped) {
+				ids.add(xref.getId());
+			}
+			entries.put(new String(key(namespace, ref, tgt), UTF8), ids);
+		}
+
+		/**
+		 * @return the number of lookups collected, besides those of the base
+		 *         snapshot
+		 */
+		public int size() {
+			return entries.size();
+		}
+
+		/**
+		 * @return true if there is something to write: a new snapshot, or
+		 *         lookups the base snapshot lacks
+		 */
+		public boolean hasChanges() {
+			return base == null || !entries.isEmpty();
+		}
+
+		public void write(File file) throws IOException {
+			if (base != null) {
+				base.copyTo(this);
+			}
+			List<byte[]> keys = new ArrayList<byte[]>(entries.size());
+			for (String key : entries.keySet()) {
+				keys.add(key.getBytes(UTF8));
+			}
+			Collections.sort(keys, new Comparator<byte[]>() {
+				@Override
+				public int compare(byte[] a, byte[] b) {
+					int n = Math.min(a.length, b.length);
+					for (int i = 0; i < n; i++) {
+						int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+						if (cmp != 0) {
+							return cmp;
+						}
+					}
+					return a.length - b.length;
+				}
+			});
+			/* encode the records first, their offsets go in the table */
+			List<byte[]> records = new ArrayList<byte[]>(keys.size());
+			for (byte[] key : keys) {
+				List<String> ids = entries.get(new String(key, UTF8));
+				int length = 2 + key.length + 2;
+				List<byte[]> values = new ArrayList<byte[]>(ids.size());
+				for (String id : ids) {
+					byte[] value = id.getBytes(UTF8);
+					values.add(value);
+					length += 2 + value.length;
+				}
+				ByteBuffer record = ByteBuffer.allocate(length);
+				record.putShort((short) key.length).put(key);
+				record.putShort((short) values.size());
+				for (byte[] value : values) {
+					record.putShort((short) value.length).put(value);
+				}
+				records.add(record.array());
+			}
+			File tmp = new File(file.getPath() + ".tmp");
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(fingerprint);
+				out.writeInt(records.size());
+				int offset = HEADER_SIZE + 4 * records.size();
+				for (byte[] record : records) {
+					out.writeInt(offset);
+					offset += record.length;
+				}
+				for (byte[] record : records) {
+					out.write(record);
+				}
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+				throw new IOException("Could not replace " + file);
+			}
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timers, counters and a latency histogram of the conversion, switched on
+ * with the <code>psimi.metrics</code> system property or by setting
+ * <code>psimi.metrics.summary</code> to the file the run summary is written
+ * to. When they are off every call returns at once on a constant, so the
+ * hot loops pay nothing for them.
+ * <p>
+ * Thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public final class Metrics implements MetricsMXBean {
+
+	public enum Stage {
+		/* reading a pathway file */
+		PARSE,
+		/* identifier lookups of a pathway */
+		MAP,
+		/* building and formatting the interaction rows of a pathway */
+		EXPAND,
+		/* writing the results to the output files */
+		SERIALIZE
+	}
+
+	public enum Counter {
+		PATHWAYS, NODES, UNMAPPED_XREFS, INTERACTIONS, CACHE_HITS, SNAPSHOT_HITS, CACHE_MISSES, FAILED_PATHWAYS, MAPPING_ERRORS
+	}
+
+	static final boolean ENABLED = Boolean.getBoolean("psimi.metrics")
+			|| System.getProperty("psimi.metrics.summary") != null;
+
+	private static final Metrics INSTANCE = new Metrics();
+	/* bucket i counts the mapper calls that took less than 2^i microseconds */
+	private static final int BUCKETS = 32;
+
+	private final AtomicLongArray stageNanos = new AtomicLongArray(
+			Stage.values().length);
+	private final AtomicLongArray counters = new AtomicLongArray(
+			Counter.values().length);
+	private final AtomicLongArray mapIdLatency = new AtomicLongArray(BUCKETS);
+	private boolean registered;
+	/* the engine whose queues are shown */
+	private volatile ConversionEngine engine;
+
+	private Metrics() {
+	}
+
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return the start of a timed section, 0 when the metrics are off
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	public static void stop(Stage stage, long start) {
+		if (ENABLED) {
+			INSTANCE.stageNanos.addAndGet(stage.ordinal(), System.nanoTime()
+					- start);
+		}
+	}
+
+	public static void count(Counter counter, long n) {
+		if (ENABLED) {
+			INSTANCE.counters.addAndGet(counter.ordinal(), n);
+		}
+	}
+
+	/**
+	 * Records the latency of a call on an IDMapper started at start.
+	 */
+	public static void mapIdCall(long start) {
+		if (ENABLED) {
+			long micros = (System.nanoTime() - start) / 1000;
+			int bucket = 64 - Long.numberOfLeadingZeros(micros);
+			INSTANCE.mapIdLatency.incrementAndGet(Math.min(bucket,
+					BUCKETS - 1));
+		}
+	}
+
+	/**
+	 * Shows the queue depths of the engine, which has started a run.
+	 */
+	public static void watch(ConversionEngine engine) {
+		INSTANCE.engine = engine;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, once. Does
+	 * nothing when they are off.
+	 */
+	public static synchronized void register() {
+		if (!ENABLED || INSTANCE.registered) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					INSTANCE,
+					new ObjectName("org.pathvisio.psimiconverter:type=Metrics"));
+			INSTANCE.registered = true;
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the run summary to the file set with
+	 * <code>psimi.metrics.summary</code>, or prints it when only
+	 * <code>psimi.metrics</code> is set.
+	 */
+	public static void writeSummary() throws IOException {
+		if (!ENABLED) {
+			return;
+		}
+		String summaryFile = System.getProperty("psimi.metrics.summary");
+		if (summaryFile == null) {
+			System.out.println(INSTANCE.getSummary());
+			return;
+		}
+		Writer out = new OutputStreamWriter(new FileOutputStream(new File(
+				summaryFile)), "UTF-8");
+		try {
+			out.write(INSTANCE.getSummary());
+			out.write('\n');
+		} finally {
+			out.close();
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	private long millis(Stage stage) {
+		return stageNanos.get(stage.ordinal()) / 1000000;
+	}
+
+	private long counter(Counter counter) {
+		return counters.get(counter.ordinal());
+	}
+
+	@Override
+	public long getPathways() {
+		return counter(Counter.PATHWAYS);
+	}
+
+	@Override
+	public long getParseMillis() {
+		return millis(Stage.PARSE);
+	}
+
+	@Override
+	public long getMapMillis() {
+		return millis(Stage.MAP);
+	}
+
+	@Override
+	public long getExpandMillis() {
+		return millis(Stage.EXPAND);
+	}
+
+	@Override
+	public long getSerializeMillis() {
+		return millis(Stage.SERIALIZE);
+	}
+
+	@Override
+	public long getNodes() {
+		return counter(Counter.NODES);
+	}
+
+	@Override
+	public long getUnmappedXrefs() {
+		return counter(Counter.UNMAPPED_XREFS);
+	}
+
+	@Override
+	public long getInteractions() {
+		return counter(Counter.INTERACTIONS);
+	}
+
+	@Override
+	public long getCacheHits() {
+		return counter(Counter.CACHE_HITS);
+	}
+
+	@Override
+	public long getSnapshotHits() {
+		return counter(Counter.SNAPSHOT_HITS);
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return counter(Counter.CACHE_MISSES);
+	}
+
+	@Override
+	public long getFailedPathways() {
+		return counter(Counter.FAILED_PATHWAYS);
+	}
+
+	@Override
+	public long getMappingErrors() {
+		return counter(Counter.MAPPING_ERRORS);
+	}
+
+	@Override
+	public int getParseQueueDepth() {
+		ConversionEngine watched = engine;
+		return watched == null ? 0 : watched.getParseQueueDepth();
+	}
+
+	@Override
+	public int getMapQueueDepth() {
+		ConversionEngine watched = engine;
+		return watched == null ? 0 : watched.getMapQueueDepth();
+	}
+
+	@Override
+	public int getSerializeQueueDepth() {
+		ConversionEngine watched = engine;
+		return watched == null ? 0 : watched.getSerializeQueueDepth();
+	}
+
+	@Override
+	public long getMapIdCalls() {
+		long calls = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			calls += mapIdLatency.get(i);
+		}
+		return calls;
+	}
+
+	@Override
+	public long getMapIdLatencyMicros(double percentile) {
+		long calls = getMapIdCalls();
+		if (calls == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(calls * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += mapIdLatency.get(i);
+			if (seen >= Math.max(1, rank)) {
+				return 1L << i;
+			}
+		}
+		return 1L << (BUCKETS - 1);
+	}
+
+	@Override
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder("{\"stagesMillis\":{");
+		for (Stage stage : Stage.values()) {
+			if (stage.ordinal() > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(stage.name().toLowerCase()).append("\":")
+			.append(millis(stage));
+		}
+		sb.append("},\"counters\":{");
+		for (Counter counter : Counter.values()) {
+			if (counter.ordinal() > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(counter.name().toLowerCase()).append("\":")
+			.append(counter(counter));
+		}
+		sb.append("},\"mapId\":{\"calls\":").append(getMapIdCalls());
+		sb.append(",\"p50Micros\":").append(getMapIdLatencyMicros(50));
+		sb.append(",\"p90Micros\":").append(getMapIdLatencyMicros(90));
+		sb.append(",\"p99Micros\":").append(getMapIdLatencyMicros(99));
+		/* calls per bucket, keyed on its upper bound in microseconds */
+		sb.append(",\"histogram\":{");
+		boolean first = true;
+		for (int i = 0; i < BUCKETS; i++) {
+			long n = mapIdLatency.get(i);
+			if (n > 0) {
+				if (!first) {
+					sb.append(',');
+				}
+				sb.append('"').append(1L << i).append("\":").append(n);
+				first = false;
+			}
+		}
+		sb.append("}}}");
+		return sb.toString();
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < stageNanos.length(); i++) {
+			stageNanos.set(i, 0);
+		}
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+		for (int i = 0; i < BUCKETS; i++) {
+			mapIdLatency.set(i, 0);
+		}
+	}
+}
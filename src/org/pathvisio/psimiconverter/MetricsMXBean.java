@@ -0,0 +1,92 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+/**
+ * Management interface of {@link Metrics}, registered with the platform
+ * MBean server as <code>org.pathvisio.psimiconverter:type=Metrics</code>
+ * and as an OSGi service. Times are summed over the workers.
+ *
+ * @author anwesha
+ *
+ */
+public interface MetricsMXBean {
+
+	boolean isEnabled();
+
+	long getPathways();
+
+	long getParseMillis();
+
+	long getMapMillis();
+
+	long getExpandMillis();
+
+	long getSerializeMillis();
+
+	long getNodes();
+
+	long getUnmappedXrefs();
+
+	long getInteractions();
+
+	long getCacheHits();
+
+	/**
+	 * @return lookups answered by the mapping snapshot
+	 */
+	long getSnapshotHits();
+
+	/**
+	 * @return lookups that had to query the bridge databases
+	 */
+	long getCacheMisses();
+
+	long getFailedPathways();
+
+	long getMappingErrors();
+
+	/**
+	 * @return pathways waiting to be parsed by the running conversion
+	 */
+	int getParseQueueDepth();
+
+	/**
+	 * @return parsed pathways waiting for identifier mapping
+	 */
+	int getMapQueueDepth();
+
+	/**
+	 * @return converted pathways waiting to be written
+	 */
+	int getSerializeQueueDepth();
+
+	long getMapIdCalls();
+
+	/**
+	 * @return upper bound of the given percentile of the mapper call
+	 *         latencies, in microseconds
+	 */
+	long getMapIdLatencyMicros(double percentile);
+
+	/**
+	 * @return the run summary as JSON
+	 */
+	String getSummary();
+
+	void reset();
+}
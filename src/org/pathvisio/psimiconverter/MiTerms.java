@@ -0,0 +1,78 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+/**
+ * Terms of the PSI-MI controlled vocabulary used by the exporters, as
+ * { id, name } pairs.
+ *
+ * @author anwesha
+ *
+ */
+final class MiTerms {
+
+	static final String[] INFERRED_BY_AUTHOR = { "MI:0363", "inferred by author" };
+	static final String[] UNSPECIFIED_ROLE = { "MI:0499", "unspecified role" };
+	static final String[] COVALENT_BINDING = { "MI:0195", "covalent binding" };
+	static final String[] ASSOCIATION = { "MI:0914", "association" };
+	static final String[] PHYSICAL_ASSOCIATION = { "MI:0915", "physical association" };
+	static final String[] CLEAVAGE_REACTION = { "MI:0194", "cleavage reaction" };
+	static final String[] ENZYMATIC_REACTION = { "MI:0414", "enzymatic reaction" };
+	/* source database; PSI-MI has no term of its own for WikiPathways */
+	static final String[] INTERACTION_DATABASE = { "MI:0461", "interaction database" };
+	static final String[] SPOKE_EXPANSION = { "MI:1060", "spoke expansion" };
+	static final String[] MATRIX_EXPANSION = { "MI:1061", "matrix expansion" };
+	static final String[] SMALL_MOLECULE = { "MI:0328", "small molecule" };
+	static final String[] PROTEIN = { "MI:0326", "protein" };
+	static final String[] GENE = { "MI:0250", "gene" };
+	static final String[] UNKNOWN_PARTICIPANT = { "MI:0329", "unknown participant" };
+
+	private MiTerms() {
+	}
+
+	/**
+	 * Interaction type of a GPML line, by the ArrowHead at its end. Lines
+	 * that do not say how the nodes interact are an association, not a
+	 * physical interaction.
+	 */
+	static String[] interactionType(String arrowHead) {
+		if ("mim-binding".equals(arrowHead)) {
+			return PHYSICAL_ASSOCIATION;
+		} else if ("mim-covalent-bond".equals(arrowHead)) {
+			return COVALENT_BINDING;
+		} else if ("mim-cleavage".equals(arrowHead)) {
+			return CLEAVAGE_REACTION;
+		} else if ("mim-catalysis".equals(arrowHead)) {
+			return ENZYMATIC_REACTION;
+		}
+		return ASSOCIATION;
+	}
+
+	/**
+	 * Interactor type of a GPML data node type.
+	 */
+	static String[] interactorType(String nodeType) {
+		if (nodeType.equalsIgnoreCase("Metabolite")) {
+			return SMALL_MOLECULE;
+		} else if (nodeType.equalsIgnoreCase("Protein")) {
+			return PROTEIN;
+		} else if (nodeType.equalsIgnoreCase("GeneProduct")) {
+			return GENE;
+		}
+		return UNKNOWN_PARTICIPANT;
+	}
+}
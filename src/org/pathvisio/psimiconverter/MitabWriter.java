@@ -0,0 +1,414 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+
+/**
+ * Writes PSI-MITAB 2.5 (15 columns) or 2.7 (42 columns) rows.
+ * <p>
+ * Every column is written straight into a reusable character buffer, which
+ * is passed on to the underlying writer when it is full, so writing a row
+ * does not create any intermediate Strings. Values that contain one of the
+ * MITAB separators are quoted, with quotes inside them escaped as
+ * <code>\"</code>; tabs and line breaks inside values become spaces.
+ * <p>
+ * Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class MitabWriter implements InteractionSink {
+
+	public enum Version {
+		MITAB25(15), MITAB27(42);
+
+		final int columns;
+
+		Version(int columns) {
+			this.columns = columns;
+		}
+	}
+
+	private static final String[] HEADER = { "#ID(s) interactor A",
+		"ID(s) interactor B", "Alt. ID(s) interactor A",
+		"Alt. ID(s) interactor B", "Alias(es) interactor A",
+		"Alias(es) interactor B", "Interaction detection method(s)",
+		"Publication 1st author(s)", "Publication Identifier(s)",
+		"Taxid interactor A", "Taxid interactor B", "Interaction type(s)",
+		"Source database(s)", "Interaction identifier(s)",
+		"Confidence value(s)", "Expansion method(s)",
+		"Biological role(s) interactor A", "Biological role(s) interactor B",
+		"Experimental role(s) interactor A",
+		"Experimental role(s) interactor B", "Type(s) interactor A",
+		"Type(s) interactor B", "Xref(s) interactor A",
+		"Xref(s) interactor B", "Interaction Xref(s)",
+		"Annotation(s) interactor A", "Annotation(s) interactor B",
+		"Interaction annotation(s)", "Host organism(s)",
+		"Interaction parameter(s)", "Creation date", "Update date",
+		"Checksum(s) interactor A", "Checksum(s) interactor B",
+		"Interaction Checksum(s)", "Negative", "Feature(s) interactor A",
+		"Feature(s) interactor B", "Stoichiometry(s) interactor A",
+		"Stoichiometry(s) interactor B",
+		"Identification method participant A",
+		"Identification method participant B" };
+
+	/* MITAB database names of the BridgeDb system codes */
+	private static final Map<String, String> DB_NAMES = new HashMap<String, String>();
+	static {
+		DB_NAMES.put("En", "ensembl");
+		DB_NAMES.put("L", "entrez gene/locuslink");
+		DB_NAMES.put("S", "uniprotkb");
+		DB_NAMES.put("H", "hgnc");
+		DB_NAMES.put("Ch", "hmdb");
+		DB_NAMES.put("Ce", "chebi");
+		DB_NAMES.put("Cs", "chemspider");
+		DB_NAMES.put("Ck", "kegg");
+		DB_NAMES.put("Cpc", "pubchem");
+		DB_NAMES.put("T", "go");
+		DB_NAMES.put("Wd", "wikidata");
+	}
+	private static final Map<DataSource, String> dbNames = new ConcurrentHashMap<DataSource, String>();
+
+	private final Writer out;
+	private final Version version;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private long rows;
+
+	public MitabWriter(Writer out, Version version) {
+		this.out = out;
+		this.version = version;
+	}
+
+	/**
+	 * MITAB version set with the <code>psimi.mitab</code> system property,
+	 * "2.5" or "2.7" (the default).
+	 */
+	public static Version defaultVersion() {
+		return "2.5".equals(System.getProperty("psimi.mitab")) ? Version.MITAB25
+				: Version.MITAB27;
+	}
+
+	public Version getVersion() {
+		return version;
+	}
+
+	public long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Writes the commented column header.
+	 */
+	public void writeHeader() throws IOException {
+		for (int i = 0; i < version.columns; i++) {
+			if (i > 0) {
+				put('\t');
+			}
+			put(HEADER[i]);
+		}
+		put('\n');
+	}
+
+	/**
+	 * Writes one interaction row.
+	 */
+	@Override
+	public void writeInteraction(String pathwayName, String organism,
+			Participant a, Participant b, String[] interactionType,
+			String[] expansion, String complexId, String annotation)
+					throws IOException {
+		int taxId = Organisms.taxId(organism);
+		/* 1-2 unique ids */
+		xref(a.ref);
+		put('\t');
+		if (b == null) {
+			put('-');
+		} else {
+			xref(b.ref);
+		}
+		/* 3-4 alternative ids, the Xrefs as they are in the pathway */
+		put('\t');
+		alternative(a);
+		put('\t');
+		alternative(b);
+		/* 5-6 aliases */
+		put('\t');
+		alias(a);
+		put('\t');
+		alias(b);
+		/* 7 detection method, 8 first author, 9 publication */
+		put('\t');
+		term(MiTerms.INFERRED_BY_AUTHOR);
+		put("\t-\t-\t");
+		/* 10-11 taxids */
+		taxId(taxId, organism);
+		put('\t');
+		if (b == null) {
+			put('-');
+		} else {
+			taxId(taxId, organism);
+		}
+		/* 12 interaction type, 13 source database */
+		put('\t');
+		term(interactionType);
+		put('\t');
+		term(MiTerms.INTERACTION_DATABASE);
+		put('\t');
+		/* 14 interaction identifiers, 15 confidence */
+		put("wikipathways:");
+		value(pathwayName);
+		if (complexId != null) {
+			put("|complex:");
+			value(complexId);
+		}
+		put("\t-");
+		if (version == Version.MITAB27) {
+			/* 16 expansion method */
+			put('\t');
+			if (expansion == null) {
+				put('-');
+			} else {
+				term(expansion);
+			}
+			/* 17-18 biological and 19-20 experimental roles */
+			put('\t');
+			term(MiTerms.UNSPECIFIED_ROLE);
+			put('\t');
+			role(b);
+			put('\t');
+			term(MiTerms.UNSPECIFIED_ROLE);
+			put('\t');
+			role(b);
+			/* 21-22 interactor types */
+			put('\t');
+			term(MiTerms.interactorType(a.nodeType));
+			put('\t');
+			if (b == null) {
+				put('-');
+			} else {
+				term(MiTerms.interactorType(b.nodeType));
+			}
+			/* 23-27 xrefs and annotations of interactors and interaction */
+			put("\t-\t-\t-\t-\t-\t");
+			/* 28 interaction annotation */
+			if (annotation == null) {
+				put('-');
+			} else {
+				put("comment:");
+				value(annotation);
+			}
+			/* 29-35 host organism, parameters, dates, checksums */
+			put("\t-\t-\t-\t-\t-\t-\t-");
+			/* 36 negative, 37-40 features and stoichiometry */
+			put("\tfalse\t-\t-\t-\t-\t");
+			/* 41-42 participant identification methods */
+			term(MiTerms.INFERRED_BY_AUTHOR);
+			put('\t');
+			if (b == null) {
+				put('-');
+			} else {
+				term(MiTerms.INFERRED_BY_AUTHOR);
+			}
+		}
+		put('\n');
+		rows++;
+	}
+
+	private void alternative(Participant p) throws IOException {
+		if (p == null || p.original == null || p.original.equals(p.ref)) {
+			put('-');
+		} else {
+			xref(p.original);
+		}
+	}
+
+	private void alias(Participant p) throws IOException {
+		if (p == null || p.label == null || p.label.length() == 0) {
+			put('-');
+		} else {
+			put("psi-mi:");
+			value(p.label);
+			put("(display_short)");
+		}
+	}
+
+	private void role(Participant p) throws IOException {
+		if (p == null) {
+			put('-');
+		} else {
+			term(MiTerms.UNSPECIFIED_ROLE);
+		}
+	}
+
+	private void taxId(int taxId, String organism) throws IOException {
+		if (taxId == Organisms.UNKNOWN) {
+			put('-');
+			return;
+		}
+		put("taxid:");
+		put(taxId);
+		put('(');
+		value(organism);
+		put(')');
+	}
+
+	private void xref(Xref ref) throws IOException {
+		put(dbName(ref.getDataSource()));
+		put(':');
+		value(ref.getId());
+	}
+
+	/**
+	 * Writes a controlled vocabulary term as psi-mi:"MI:0000"(name).
+	 */
+	private void term(String[] term) throws IOException {
+		put("psi-mi:\"");
+		put(term[0]);
+		put("\"(");
+		value(term[1]);
+		put(')');
+	}
+
+	/**
+	 * PSI-MI database name of a DataSource, also used by the XML export.
+	 */
+	static String dbName(DataSource ds) {
+		if (ds == null) {
+			return "unknown";
+		}
+		String name = dbNames.get(ds);
+		if (name == null) {
+			name = ds.getSystemCode() == null ? null : DB_NAMES.get(ds
+					.getSystemCode());
+			if (name == null) {
+				name = ds.getFullName() == null ? ds.getSystemCode() : ds
+						.getFullName().toLowerCase();
+				name = name.replace(':', '_').replace('|', '_')
+						.replace('(', '_').replace(')', '_').replace('\t', ' ');
+			}
+			dbNames.put(ds, name);
+		}
+		return name;
+	}
+
+	/**
+	 * Writes a value, quoted if it contains a MITAB separator.
+	 */
+	private void value(String value) throws IOException {
+		if (value == null || value.length() == 0) {
+			put('-');
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			switch (value.charAt(i)) {
+			case '|':
+			case '(':
+			case ')':
+			case ':':
+			case '"':
+			case '\t':
+				quote = true;
+				break;
+			default:
+				break;
+			}
+		}
+		if (quote) {
+			put('"');
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				put('\\');
+				put('"');
+				break;
+			case '\t':
+			case '\n':
+			case '\r':
+				put(' ');
+				break;
+			default:
+				put(c);
+				break;
+			}
+		}
+		if (quote) {
+			put('"');
+		}
+	}
+
+	private void put(char c) throws IOException {
+		if (pos == buffer.length) {
+			flushBuffer();
+		}
+		buffer[pos++] = c;
+	}
+
+	private void put(String s) throws IOException {
+		int length = s.length();
+		int start = 0;
+		while (start < length) {
+			if (pos == buffer.length) {
+				flushBuffer();
+			}
+			int n = Math.min(length - start, buffer.length - pos);
+			s.getChars(start, start + n, buffer, pos);
+			pos += n;
+			start += n;
+		}
+	}
+
+	private void put(int value) throws IOException {
+		if (value < 0) {
+			put('-');
+			value = -value;
+		}
+		int divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			put((char) ('0' + value / divisor % 10));
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, pos);
+		pos = 0;
+	}
+
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		flushBuffer();
+		out.close();
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NCBI taxonomy ids of the species on WikiPathways, keyed on the latin name
+ * used in the Organism attribute of GPML.
+ *
+ * @author anwesha
+ *
+ */
+public class Organisms {
+
+	/* PSI-MI uses -3 for an unknown organism */
+	public static final int UNKNOWN = -3;
+
+	private static final Map<String, Integer> TAXIDS = new HashMap<String, Integer>();
+	static {
+		TAXIDS.put("Anopheles gambiae", 7165);
+		TAXIDS.put("Arabidopsis thaliana", 3702);
+		TAXIDS.put("Bacillus subtilis", 1423);
+		TAXIDS.put("Bos taurus", 9913);
+		TAXIDS.put("Caenorhabditis elegans", 6239);
+		TAXIDS.put("Canis familiaris", 9615);
+		TAXIDS.put("Danio rerio", 7955);
+		TAXIDS.put("Drosophila melanogaster", 7227);
+		TAXIDS.put("Escherichia coli", 562);
+		TAXIDS.put("Equus caballus", 9796);
+		TAXIDS.put("Gallus gallus", 9031);
+		TAXIDS.put("Homo sapiens", 9606);
+		TAXIDS.put("Mus musculus", 10090);
+		TAXIDS.put("Mycobacterium tuberculosis", 1773);
+		TAXIDS.put("Oryza sativa", 4530);
+		TAXIDS.put("Pan troglodytes", 9598);
+		TAXIDS.put("Rattus norvegicus", 10116);
+		TAXIDS.put("Saccharomyces cerevisiae", 4932);
+		TAXIDS.put("Sus scrofa", 9823);
+		TAXIDS.put("Xenopus tropicalis", 8364);
+		TAXIDS.put("Zea mays", 4577);
+	}
+
+	/* species prefix of the BridgeDb bridge files, e.g. Hs_Derby_Ensembl_80 */
+	private static final Map<String, String> BRIDGE_CODES = new HashMap<String, String>();
+	static {
+		BRIDGE_CODES.put("Anopheles gambiae", "Ag");
+		BRIDGE_CODES.put("Arabidopsis thaliana", "At");
+		BRIDGE_CODES.put("Bacillus subtilis", "Bs");
+		BRIDGE_CODES.put("Bos taurus", "Bt");
+		BRIDGE_CODES.put("Caenorhabditis elegans", "Ce");
+		BRIDGE_CODES.put("Canis familiaris", "Cf");
+		BRIDGE_CODES.put("Danio rerio", "Dr");
+		BRIDGE_CODES.put("Drosophila melanogaster", "Dm");
+		BRIDGE_CODES.put("Escherichia coli", "Ec");
+		BRIDGE_CODES.put("Equus caballus", "Qc");
+		BRIDGE_CODES.put("Gallus gallus", "Gg");
+		BRIDGE_CODES.put("Homo sapiens", "Hs");
+		BRIDGE_CODES.put("Mus musculus", "Mm");
+		BRIDGE_CODES.put("Mycobacterium tuberculosis", "Mx");
+		BRIDGE_CODES.put("Oryza sativa", "Oj");
+		BRIDGE_CODES.put("Pan troglodytes", "Pt");
+		BRIDGE_CODES.put("Rattus norvegicus", "Rn");
+		BRIDGE_CODES.put("Saccharomyces cerevisiae", "Sc");
+		BRIDGE_CODES.put("Sus scrofa", "Ss");
+		BRIDGE_CODES.put("Xenopus tropicalis", "Xt");
+		BRIDGE_CODES.put("Zea mays", "Zm");
+	}
+
+	private Organisms() {
+	}
+
+	/**
+	 * @return the taxonomy id of the organism, or {@link #UNKNOWN}
+	 */
+	public static int taxId(String organism) {
+		Integer taxId = organism == null ? null : TAXIDS.get(organism.trim());
+		return taxId == null ? UNKNOWN : taxId;
+	}
+
+	/**
+	 * @return the species prefix of the bridge files for the organism, or
+	 *         null if it is not known
+	 */
+	public static String bridgeCode(String organism) {
+		return organism == null ? null : BRIDGE_CODES.get(organism.trim());
+	}
+
+	/**
+	 * @return true if the code is the species prefix of a known organism
+	 */
+	public static boolean isBridgeCode(String code) {
+		return BRIDGE_CODES.containsValue(code);
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import org.bridgedb.Xref;
+
+/**
+ * One side of an interaction: a data node with the Xref it was mapped to.
+ *
+ * @author anwesha
+ *
+ */
+public class Participant {
+
+	final String label;
+	final String nodeType;
+	/* the preferred Xref */
+	final Xref ref;
+	/* the Xref as it is in the pathway */
+	final Xref original;
+
+	public Participant(String label, String nodeType, Xref ref) {
+		this(label, nodeType, ref, ref);
+	}
+
+	public Participant(String label, String nodeType, Xref ref, Xref original) {
+		this.label = label;
+		this.nodeType = nodeType;
+		this.ref = ref;
+		this.original = original;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public String getNodeType() {
+		return nodeType;
+	}
+
+	public Xref getRef() {
+		return ref;
+	}
+
+	public Xref getOriginal() {
+		return original;
+	}
+}
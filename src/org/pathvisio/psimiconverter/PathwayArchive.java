@@ -0,0 +1,316 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The GPML files of a zip, tar or tar.gz archive, such as a WikiPathways
+ * release, read without extracting them. Zip entries are handed out in
+ * name order and inflated by whoever opens them, so the workers of a
+ * {@link ConversionEngine} do it in parallel. A tar archive can only be
+ * read front to back: its entries come in archive order and each is read
+ * into memory when it is handed out.
+ * <p>
+ * {@link #next()} must be called from one thread; the entries may be opened
+ * from any thread.
+ *
+ * @author anwesha
+ *
+ */
+public abstract class PathwayArchive implements Closeable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * A pathway file in the archive.
+	 */
+	public interface Entry {
+		String getName();
+
+		InputStream open() throws IOException;
+	}
+
+	/**
+	 * @return true if the file is read as an archive, judged by its name
+	 */
+	public static boolean isArchive(File file) {
+		String name = file.getName().toLowerCase();
+		return file.isFile()
+				&& (name.endsWith(".zip") || name.endsWith(".tar")
+						|| name.endsWith(".tar.gz") || name.endsWith(".tgz"));
+	}
+
+	public static PathwayArchive open(File file) throws IOException {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".zip")) {
+			return new Zip(file);
+		}
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return new Tar(name.endsWith(".tar") ? in : new GZIPInputStream(
+					in, 65536));
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the next GPML file, or null after the last one
+	 */
+	public abstract Entry next() throws IOException;
+
+	static boolean isPathway(String name) {
+		return name.toLowerCase().endsWith(".gpml")
+				&& !name.startsWith("__MACOSX/");
+	}
+
+	private static class Zip extends PathwayArchive {
+		private final ZipFile zip;
+		private final Iterator<ZipEntry> entries;
+
+		Zip(File file) throws IOException {
+			zip = new ZipFile(file);
+			List<ZipEntry> pathways = new ArrayList<ZipEntry>();
+			for (Enumeration<? extends ZipEntry> e = zip.entries(); e
+					.hasMoreElements();) {
+				ZipEntry entry = e.nextElement();
+				if (!entry.isDirectory() && isPathway(entry.getName())) {
+					pathways.add(entry);
+				}
+			}
+			Collections.sort(pathways, new Comparator<ZipEntry>() {
+				@Override
+				public int compare(ZipEntry a, ZipEntry b) {
+					return a.getName().compareTo(b.getName());
+				}
+			});
+			entries = pathways.iterator();
+		}
+
+		@Override
+		public Entry next() {
+			if (!entries.hasNext()) {
+				return null;
+			}
+			final ZipEntry entry = entries.next();
+			return new Entry() {
+				@Override
+				public String getName() {
+					return entry.getName();
+				}
+
+				@Override
+				public InputStream open() throws IOException {
+					return zip.getInputStream(entry);
+				}
+			};
+		}
+
+		@Override
+		public void close() throws IOException {
+			zip.close();
+		}
+	}
+
+	/**
+	 * Reads the ustar format, with the GNU and pax extensions for long
+	 * names.
+	 */
+	private static class Tar extends PathwayArchive {
+		private final DataInputStream in;
+		private final byte[] header = new byte[512];
+
+		Tar(InputStream in) {
+			this.in = new DataInputStream(in);
+		}
+
+		@Override
+		public Entry next() throws IOException {
+			String longName = null;
+			while (true) {
+				try {
+					in.readFully(header);
+				} catch (EOFException e) {
+					return null;
+				}
+				if (header[0] == 0) {
+					/* the two empty blocks at the end */
+					return null;
+				}
+				long size = octal(124, 12);
+				char type = (char) header[156];
+				if (type == 'L') {
+					byte[] data = read(size);
+					longName = string(data, 0, data.length);
+				} else if (type == 'x') {
+					String path = paxPath(read(size));
+					if (path != null) {
+						longName = path;
+					}
+				} else if (type == '0' || type == 0) {
+					final String name = longName != null ? longName : name();
+					longName = null;
+					if (!isPathway(name)) {
+						/* other files are passed over without buffering */
+						skip(size + padding(size));
+					} else {
+						final byte[] content = read(size);
+						return new Entry() {
+							@Override
+							public String getName() {
+								return name;
+							}
+
+							@Override
+							public InputStream open() {
+								return new ByteArrayInputStream(content);
+							}
+						};
+					}
+				} else {
+					skip(size + padding(size));
+					longName = null;
+				}
+			}
+		}
+
+		private String name() {
+			String name = string(header, 0, 100);
+			if ("ustar".equals(string(header, 257, 6).trim())) {
+				String prefix = string(header, 345, 155);
+				if (!prefix.isEmpty()) {
+					name = prefix + "/" + name;
+				}
+			}
+			return name;
+		}
+
+		/**
+		 * Reads the data of an entry and skips the padding behind it.
+		 */
+		private byte[] read(long size) throws IOException {
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Tar entry of " + size + " bytes");
+			}
+			byte[] data = new byte[(int) size];
+			in.readFully(data);
+			skip(padding(size));
+			return data;
+		}
+
+		/**
+		 * @return the bytes that fill the last block of an entry
+		 */
+		private static long padding(long size) {
+			return (512 - size % 512) % 512;
+		}
+
+		private void skip(long bytes) throws IOException {
+			while (bytes > 0) {
+				long skipped = in.skip(bytes);
+				if (skipped <= 0) {
+					/* skip may stop early, read tells the end of the data */
+					if (in.read() < 0) {
+						throw new EOFException("Truncated tar entry");
+					}
+					skipped = 1;
+				}
+				bytes -= skipped;
+			}
+		}
+
+		private long octal(int offset, int length) throws IOException {
+			long value = 0;
+			for (int i = offset; i < offset + length; i++) {
+				byte b = header[i];
+				if (b == 0 || b == ' ') {
+					if (value > 0) {
+						break;
+					}
+				} else if (b >= '0' && b <= '7') {
+					value = value * 8 + b - '0';
+				} else {
+					throw new IOException("Not a tar archive");
+				}
+			}
+			return value;
+		}
+
+		/**
+		 * @return the path record of pax extended header data, lines of the
+		 *         form "length key=value\n"
+		 */
+		private static String paxPath(byte[] data) {
+			int pos = 0;
+			while (pos < data.length) {
+				int space = pos;
+				while (space < data.length && data[space] != ' ') {
+					space++;
+				}
+				int length;
+				try {
+					length = Integer.parseInt(string(data, pos, space - pos));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+				if (length <= 0 || pos + length > data.length) {
+					return null;
+				}
+				String record = new String(data, space + 1, pos + length
+						- space - 2, UTF8);
+				if (record.startsWith("path=")) {
+					return record.substring(5);
+				}
+				pos += length;
+			}
+			return null;
+		}
+
+		private static String string(byte[] bytes, int offset, int length) {
+			int end = offset;
+			while (end < offset + length && bytes[end] != 0) {
+				end++;
+			}
+			return new String(bytes, offset, end - offset, UTF8);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
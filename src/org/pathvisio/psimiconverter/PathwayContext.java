@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.Xref;
+import org.pathvisio.core.model.Pathway;
+import org.pathvisio.core.model.PathwayElement;
+
+/**
+ * Working state for the conversion of a single pathway. Each worker of the
+ * {@link ConversionEngine} gets its own context, so nothing in here is shared
+ * between threads.
+ * <p>
+ * The results of a pathway are plain collections of Strings. Once merged
+ * for the whole corpus, the gene products are kept as
+ * {@link StringDictionary} codes with an int array of their pathways; see
+ * {@link FragmentSinks#geneProducts(java.io.File, boolean)}.
+ *
+ * @author anwesha
+ *
+ */
+public class PathwayContext {
+
+	final String pathwayName;
+	final String organism;
+	/* DataNodes, Groups and Interactions in document order */
+	final List<GpmlElement> elements;
+	/* graphId -> data node with an Xref */
+	Map<String, GpmlElement> datanodes = new HashMap<String, GpmlElement>();
+	/* complex id -> members, in pathway order */
+	Map<String, List<Participant>> complexes = new LinkedHashMap<String, List<Participant>>();
+	/* Xrefs of this pathway resolved in bulk, per target DataSource */
+	Map<DataSource, Map<Xref, Set<Xref>>> mapped = new HashMap<DataSource, Map<Xref, Set<Xref>>>();
+	boolean preferredIdsResolved;
+	/* set on first lookup to the route of the organism, see SpeciesRouting */
+	MappingCache mappingCache;
+	/*
+	 * Results of this pathway, copied into its PathwayFragments, which the
+	 * FragmentSinks merge. First the gene products: Ensembl id -> pathway
+	 */
+	Map<String, String> uniquedatanodeList = new LinkedHashMap<String, String>();
+	/* pathway, label, Xref and type rows of the metabolites */
+	Set<String> metabolites = new LinkedHashSet<String>();
+	/* pathway, Ensembl gene and GO term rows */
+	Set<String> goAnnotations = new LinkedHashSet<String>();
+
+	public PathwayContext(String pathwayName, String organism,
+			List<GpmlElement> elements) {
+		this.pathwayName = pathwayName;
+		this.organism = organism;
+		this.elements = elements;
+	}
+
+	/**
+	 * Context for a pathway already loaded into PathVisio.
+	 */
+	public static PathwayContext fromPathway(Pathway pathway) {
+		List<GpmlElement> elements = new ArrayList<GpmlElement>();
+		for (PathwayElement pwe : pathway.getDataObjects()) {
+			elements.add(GpmlElement.fromPathwayElement(pwe));
+		}
+		return new PathwayContext(pathway.getMappInfo().getMapInfoName(),
+				pathway.getMappInfo().getOrganism(), elements);
+	}
+
+	public List<GpmlElement> getElements() {
+		return elements;
+	}
+
+	public String getPathwayName() {
+		return pathwayName;
+	}
+
+	public String getOrganism() {
+		return organism;
+	}
+
+	/**
+	 * @return the Xrefs a bulk lookup mapped the Xref to, or null if it was
+	 *         not part of one
+	 */
+	Set<Xref> getMapped(Xref ref, DataSource tgt) {
+		Map<Xref, Set<Xref>> byTarget = mapped.get(tgt);
+		return byTarget == null ? null : byTarget.get(ref);
+	}
+
+	void putMapped(DataSource tgt, Map<Xref, Set<Xref>> refs) {
+		Map<Xref, Set<Xref>> byTarget = mapped.get(tgt);
+		if (byTarget == null) {
+			byTarget = new HashMap<Xref, Set<Xref>>();
+			mapped.put(tgt, byTarget);
+		}
+		byTarget.putAll(refs);
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+
+import org.pathvisio.core.model.ConverterException;
+import org.pathvisio.core.model.PathwayExporter;
+import org.pathvisio.core.util.ProgressKeeper;
+
+/**
+ * An exporter that works on a copy of the pathway, so that it can run
+ * while the editor goes on, and that reports its progress.
+ *
+ * @author anwesha
+ *
+ */
+public interface PathwayContextExporter extends PathwayExporter {
+
+	/**
+	 * Exports the pathway. Throws a
+	 * {@link java.util.concurrent.CancellationException} when the progress
+	 * keeper is cancelled; the file is deleted then.
+	 */
+	void doExport(File file, PathwayContext ctx, ProgressKeeper pk)
+			throws ConverterException;
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the command line writes for one pathway: its MITAB rows, its gene
+ * products, metabolites, GO terms and network edges. Fragments can be
+ * stored in a directory, keyed on the content hash of the pathway file, and
+ * read back by a later incremental run.
+ *
+ * @author anwesha
+ *
+ */
+public class PathwayFragments {
+
+	private static final String[] SUFFIXES = { ".mitab", ".genes", ".go",
+		".mets", ".edges" };
+
+	/* MITAB rows, without header */
+	final String interactions;
+	/* Ensembl id -> pathway name */
+	final Map<String, String> geneProducts;
+	/* tab separated pathway, label, Xref and type */
+	final Set<String> metabolites;
+	/* tab separated pathway, Ensembl gene and GO term */
+	final Set<String> goAnnotations;
+	/* lines of an EdgeList */
+	final String edges;
+
+	public PathwayFragments(String interactions,
+			Map<String, String> geneProducts, Set<String> metabolites,
+			Set<String> goAnnotations, String edges) {
+		this.interactions = interactions;
+		this.geneProducts = geneProducts;
+		this.metabolites = metabolites;
+		this.goAnnotations = goAnnotations;
+		this.edges = edges;
+	}
+
+	public static boolean exists(File dir, String key) {
+		for (String suffix : SUFFIXES) {
+			if (!new File(dir, key + suffix).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static PathwayFragments read(File dir, String key)
+			throws IOException {
+		String interactions = readFile(new File(dir, key + SUFFIXES[0]));
+		Map<String, String> geneProducts = new LinkedHashMap<String, String>();
+		for (String line : lines(readFile(new File(dir, key + SUFFIXES[1])))) {
+			int tab = line.indexOf('\t');
+			geneProducts.put(line.substring(0, tab), line.substring(tab + 1));
+		}
+		Set<String> goAnnotations = new LinkedHashSet<String>();
+		for (String line : lines(readFile(new File(dir, key + SUFFIXES[2])))) {
+			goAnnotations.add(line);
+		}
+		Set<String> metabolites = new LinkedHashSet<String>();
+		for (String line : lines(readFile(new File(dir, key + SUFFIXES[3])))) {
+			metabolites.add(line);
+		}
+		String edges = readFile(new File(dir, key + SUFFIXES[4]));
+		return new PathwayFragments(interactions, geneProducts, metabolites,
+				goAnnotations, edges);
+	}
+
+	/**
+	 * Stores the fragments; each file is written under a temporary name
+	 * first so that an interrupted run never leaves half a fragment.
+	 */
+	public void write(File dir, String key) throws IOException {
+		writeFile(new File(dir, key + SUFFIXES[0]), interactions);
+		StringBuilder genes = new StringBuilder();
+		for (Map.Entry<String, String> gp : geneProducts.entrySet()) {
+			genes.append(gp.getKey()).append('\t')
+			.append(oneLine(gp.getValue())).append('\n');
+		}
+		writeFile(new File(dir, key + SUFFIXES[1]), genes.toString());
+		StringBuilder go = new StringBuilder();
+		for (String row : goAnnotations) {
+			go.append(row).append('\n');
+		}
+		writeFile(new File(dir, key + SUFFIXES[2]), go.toString());
+		StringBuilder mets = new StringBuilder();
+		for (String row : metabolites) {
+			mets.append(row).append('\n');
+		}
+		writeFile(new File(dir, key + SUFFIXES[3]), mets.toString());
+		writeFile(new File(dir, key + SUFFIXES[4]), edges);
+	}
+
+	public static void delete(File dir, String key) {
+		for (String suffix : SUFFIXES) {
+			new File(dir, key + suffix).delete();
+		}
+	}
+
+	/**
+	 * Deletes all fragments in the directory.
+	 */
+	public static void deleteAll(File dir) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			for (String suffix : SUFFIXES) {
+				if (file.getName().endsWith(suffix)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the value without tabs and line breaks
+	 */
+	static String oneLine(String value) {
+		return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ')
+				.replace('\r', ' ');
+	}
+
+	private static String[] lines(String text) {
+		return text.isEmpty() ? new String[0] : text.split("\n");
+	}
+
+	private static String readFile(File file) throws IOException {
+		Reader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			StringBuilder text = new StringBuilder((int) file.length());
+			char[] buffer = new char[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				text.append(buffer, 0, n);
+			}
+			return text.toString();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeFile(File file, String text) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tmp), "UTF-8"));
+		try {
+			out.write(text);
+		} finally {
+			out.close();
+		}
+		if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+			throw new IOException("Could not replace " + file);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pathvisio.psimiconverter;
+
+import org.pathvisio.core.Engine;
+import org.pathvisio.desktop.PvDesktop;
+import org.pathvisio.desktop.plugin.Plugin;
+
+/**
+ * Adds the exporters to the PathVisio editor.
+ *
+ * @author anwesha
+ *
+ */
+public class PsimiDesktopPlugin implements Plugin {
+
+	@Override
+	public void init(PvDesktop desktop) {
+		Engine engine = desktop.getSwingEngine().getEngine();
+		engine.addPathwayExporter(new BackgroundExporter(desktop,
+				new Interactions()));
+		engine.addPathwayExporter(new BackgroundExporter(desktop,
+				new PsimiPlugin()));
+	}
+
+	@Override
+	public void done() {
+	}
+}
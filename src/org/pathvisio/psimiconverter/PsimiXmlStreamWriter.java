@@ -0,0 +1,284 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a PSI-MI XML 2.5.4 file one interaction at a time, without building
+ * an EntrySet in memory.
+ * <p>
+ * The compact form of PSI-MI XML puts all interactors before the
+ * interactions. Interactors are written to the output the first time they
+ * are seen, and the interactions go to a spool file that is copied behind
+ * the interactor list on {@link #close()}. Only the ids of the interactors
+ * written so far are kept in memory.
+ * <p>
+ * Not thread safe, feed it from one thread.
+ *
+ * @author anwesha
+ *
+ */
+public class PsimiXmlStreamWriter {
+
+	private static final String NAMESPACE = "net:sf:psidev:mi";
+	private static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final String SCHEMA = "net:sf:psidev:mi http://psidev.sourceforge.net/mi/rel25/src/MIF254.xsd";
+	/* the WikiPathways paper, PMID 18651794 */
+	private static final String BIBREF = "18651794";
+	private static final int EXPERIMENT_ID = 1;
+
+	private final Writer out;
+	private final XMLStreamWriter xml;
+	private final File spoolFile;
+	private final Writer spoolOut;
+	private final XMLStreamWriter spool;
+	private final Map<String, Integer> interactorIds = new HashMap<String, Integer>();
+	private int nextId = EXPERIMENT_ID + 1;
+	private int interactionCount;
+
+	public PsimiXmlStreamWriter(Writer out) throws IOException {
+		this.out = out;
+		this.spoolFile = File.createTempFile("psimi-interactions", ".xml");
+		this.spoolFile.deleteOnExit();
+		this.spoolOut = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(spoolFile), "UTF-8"));
+		try {
+			XMLOutputFactory factory = XMLOutputFactory.newInstance();
+			this.xml = factory.createXMLStreamWriter(out);
+			this.spool = factory.createXMLStreamWriter(spoolOut);
+			writeHeader();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void writeHeader() throws XMLStreamException {
+		xml.writeStartDocument("UTF-8", "1.0");
+		xml.writeStartElement("entrySet");
+		xml.writeDefaultNamespace(NAMESPACE);
+		xml.writeNamespace("xsi", XSI);
+		xml.writeAttribute(XSI, "schemaLocation", SCHEMA);
+		xml.writeAttribute("level", "2");
+		xml.writeAttribute("version", "5");
+		xml.writeAttribute("minorVersion", "4");
+		xml.writeStartElement("entry");
+
+		xml.writeStartElement("source");
+		writeNames(xml, "WikiPathways", null);
+		xml.writeEndElement();
+
+		xml.writeStartElement("experimentList");
+		xml.writeStartElement("experimentDescription");
+		xml.writeAttribute("id", String.valueOf(EXPERIMENT_ID));
+		writeNames(xml, "WikiPathways", null);
+		xml.writeStartElement("bibref");
+		xml.writeStartElement("xref");
+		xml.writeEmptyElement("primaryRef");
+		xml.writeAttribute("db", "pubmed");
+		xml.writeAttribute("id", BIBREF);
+		xml.writeEndElement();
+		xml.writeEndElement();
+		writeCv(xml, "interactionDetectionMethod", MiTerms.INFERRED_BY_AUTHOR);
+		writeCv(xml, "participantIdentificationMethod",
+				MiTerms.INFERRED_BY_AUTHOR);
+		xml.writeEndElement();
+		xml.writeEndElement();
+
+		xml.writeStartElement("interactorList");
+	}
+
+	/**
+	 * Writes a binary interaction between the participants, or an n-ary one
+	 * for a complex.
+	 *
+	 * @param organism
+	 *            latin name of the organism of the pathway
+	 * @param interactionType
+	 *            PSI-MI term of the interaction, as { id, name }
+	 */
+	public void writeInteraction(String pathwayName, String organism,
+			String[] interactionType, List<Participant> participants)
+					throws IOException {
+		try {
+			int[] refs = new int[participants.size()];
+			for (int i = 0; i < refs.length; i++) {
+				refs[i] = interactor(participants.get(i), organism);
+			}
+			spool.writeStartElement("interaction");
+			spool.writeAttribute("id", String.valueOf(nextId++));
+			writeNames(spool, pathwayName, null);
+			spool.writeStartElement("experimentList");
+			spool.writeStartElement("experimentRef");
+			spool.writeCharacters(String.valueOf(EXPERIMENT_ID));
+			spool.writeEndElement();
+			spool.writeEndElement();
+			spool.writeStartElement("participantList");
+			for (int ref : refs) {
+				spool.writeStartElement("participant");
+				spool.writeAttribute("id", String.valueOf(nextId++));
+				spool.writeStartElement("interactorRef");
+				spool.writeCharacters(String.valueOf(ref));
+				spool.writeEndElement();
+				writeCv(spool, "biologicalRole", MiTerms.UNSPECIFIED_ROLE);
+				spool.writeStartElement("experimentalRoleList");
+				writeCv(spool, "experimentalRole", MiTerms.UNSPECIFIED_ROLE);
+				spool.writeEndElement();
+				spool.writeEndElement();
+			}
+			spool.writeEndElement();
+			writeCv(spool, "interactionType", interactionType);
+			spool.writeEndElement();
+			interactionCount++;
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Writes the interactor if it was not written before and returns its id.
+	 */
+	private int interactor(Participant participant, String organism)
+			throws XMLStreamException {
+		String key = participant.ref.getDataSource().getSystemCode() + ":"
+				+ participant.ref.getId();
+		Integer id = interactorIds.get(key);
+		if (id != null) {
+			return id;
+		}
+		id = nextId++;
+		interactorIds.put(key, id);
+		xml.writeStartElement("interactor");
+		xml.writeAttribute("id", String.valueOf(id));
+		/* unlabelled data nodes are named by their identifier */
+		String label = participant.label;
+		writeNames(xml, label == null || label.trim().isEmpty() ? participant.ref
+				.getId() : label, null);
+		xml.writeStartElement("xref");
+		xml.writeEmptyElement("primaryRef");
+		xml.writeAttribute("db",
+				MitabWriter.dbName(participant.ref.getDataSource()));
+		xml.writeAttribute("id", participant.ref.getId());
+		xml.writeEndElement();
+		writeCv(xml, "interactorType",
+				MiTerms.interactorType(participant.nodeType));
+		xml.writeStartElement("organism");
+		xml.writeAttribute("ncbiTaxId",
+				String.valueOf(Organisms.taxId(organism)));
+		writeNames(xml, organism == null ? "unknown" : organism, null);
+		xml.writeEndElement();
+		xml.writeEndElement();
+		return id;
+	}
+
+	public int getInteractionCount() {
+		return interactionCount;
+	}
+
+	public int getInteractorCount() {
+		return interactorIds.size();
+	}
+
+	/**
+	 * Closes the interactor list, appends the spooled interactions and
+	 * finishes the document.
+	 */
+	public void close() throws IOException {
+		try {
+			spool.flush();
+			spool.close();
+			spoolOut.close();
+			xml.writeEndElement();
+			xml.writeStartElement("interactionList");
+			/* ends the start tag, the spool is copied in as it is */
+			xml.writeCharacters("");
+			xml.flush();
+			Reader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(spoolFile), "UTF-8"));
+			try {
+				char[] buffer = new char[8192];
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					out.write(buffer, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+			xml.writeEndElement();
+			xml.writeEndElement();
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.flush();
+			xml.close();
+			out.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			spoolFile.delete();
+		}
+	}
+
+	private static void writeNames(XMLStreamWriter w, String shortLabel,
+			String fullName) throws XMLStreamException {
+		w.writeStartElement("names");
+		w.writeStartElement("shortLabel");
+		w.writeCharacters(shortLabel == null ? "" : shortLabel);
+		w.writeEndElement();
+		if (fullName != null) {
+			w.writeStartElement("fullName");
+			w.writeCharacters(fullName);
+			w.writeEndElement();
+		}
+		w.writeEndElement();
+	}
+
+	/**
+	 * Writes a term of the PSI-MI controlled vocabulary.
+	 */
+	private static void writeCv(XMLStreamWriter w, String element,
+			String[] term) throws XMLStreamException {
+		String mi = term[0];
+		String name = term[1];
+		w.writeStartElement(element);
+		writeNames(w, name, name);
+		w.writeStartElement("xref");
+		w.writeEmptyElement("primaryRef");
+		w.writeAttribute("db", "psi-mi");
+		w.writeAttribute("dbAc", "MI:0488");
+		w.writeAttribute("id", mi);
+		w.writeAttribute("refType", "identity");
+		w.writeAttribute("refTypeAc", "MI:0356");
+		w.writeEndElement();
+		w.writeEndElement();
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One of several parts of the corpus that are converted by separate
+ * processes and combined with {@link ShardMerge}. A pathway belongs to the
+ * shard given by a CRC-32 of its file name, without the directory, so the
+ * split does not depend on the machine, the directory or the archive the
+ * files are read from.
+ *
+ * @author anwesha
+ *
+ */
+public class Shard {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int index;
+	private final int count;
+
+	/**
+	 * @param index
+	 *            the shard, from 0 to count - 1
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException("No shard " + index + " of "
+					+ count);
+		}
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * Shard set with the <code>psimi.shard</code> system property as
+	 * index/count, for instance 0/4, or null to convert all pathways.
+	 */
+	public static Shard defaultShard() {
+		String value = System.getProperty("psimi.shard");
+		if (value == null) {
+			return null;
+		}
+		int slash = value.indexOf('/');
+		try {
+			return new Shard(Integer.parseInt(value.substring(0, slash)
+					.trim()), Integer.parseInt(value.substring(slash + 1)
+							.trim()));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException(
+					"psimi.shard must be index/count, not " + value);
+		}
+	}
+
+	/**
+	 * @param name
+	 *            path of a pathway file or archive entry
+	 */
+	public boolean contains(String name) {
+		String fileName = name.substring(Math.max(name.lastIndexOf('/'),
+				name.lastIndexOf('\\')) + 1);
+		CRC32 crc = new CRC32();
+		crc.update(fileName.getBytes(UTF8));
+		return crc.getValue() % count == index;
+	}
+
+	public List<File> select(List<File> files) {
+		List<File> result = new ArrayList<File>();
+		for (File file : files) {
+			if (contains(file.getName())) {
+				result.add(file);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the entries of the archive in this shard
+	 */
+	public PathwayArchive select(final PathwayArchive archive) {
+		return new PathwayArchive() {
+			@Override
+			public Entry next() throws IOException {
+				Entry entry;
+				do {
+					entry = archive.next();
+				} while (entry != null && !contains(entry.getName()));
+				return entry;
+			}
+
+			@Override
+			public void close() throws IOException {
+				archive.close();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+}
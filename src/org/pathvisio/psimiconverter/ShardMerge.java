@@ -0,0 +1,94 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Combines the output files of the shards of a run into one. The rows of
+ * all shards are sorted and identical rows written once, like a run
+ * without shards writes them, so the merged file is the same whichever way
+ * the corpus was split. Header lines, starting with #, are taken from the
+ * first shard and must be the same in every shard.
+ * <p>
+ * Usage: ShardMerge &lt;rows|genes&gt; &lt;merged file&gt; &lt;shard
+ * file&gt;...
+ * <p>
+ * "rows" merges interaction, metabolite, GO annotation and GO term files.
+ * "genes" merges gene product files, keeping one row per gene with the
+ * greatest pathway name.
+ *
+ * @author anwesha
+ *
+ */
+public class ShardMerge {
+
+	private final SortedRowFile rows;
+	private String header;
+
+	public ShardMerge(boolean genes) {
+		rows = new SortedRowFile(genes, SortedRowFile.defaultMemory());
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3
+				|| !("rows".equals(args[0]) || "genes".equals(args[0]))) {
+			System.err.println("Usage: ShardMerge <rows|genes> <merged file>"
+					+ " <shard file>...");
+			System.exit(1);
+		}
+		ShardMerge merge = new ShardMerge("genes".equals(args[0]));
+		for (int i = 2; i < args.length; i++) {
+			merge.add(new File(args[i]));
+		}
+		merge.write(new File(args[1]));
+		System.out.println(args.length - 2 + " shards merged into "
+				+ args[1]);
+	}
+
+	public void add(File shardFile) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(shardFile), "UTF-8"));
+		try {
+			StringBuilder fileHeader = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("#")) {
+					fileHeader.append(line).append('\n');
+				} else if (line.length() > 0) {
+					rows.add(line);
+				}
+			}
+			if (header == null) {
+				header = fileHeader.toString();
+			} else if (!header.equals(fileHeader.toString())) {
+				throw new IOException("The header of " + shardFile
+						+ " differs from the other shards");
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	public void write(File mergedFile) throws IOException {
+		rows.write(mergedFile, header == null ? "" : header);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * A text output whose rows are written sorted, identical rows once, so the
+ * file does not depend on the order of the pathways or on how a run was
+ * split into shards. Rows are kept in a {@link SpillingStringSet} up to a
+ * heap budget, so memory does not grow with the corpus.
+ * <p>
+ * A gene file has one row per gene, the first column, with the greatest
+ * pathway name of all its rows. Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class SortedRowFile {
+
+	private final boolean genes;
+	private final SpillingStringSet rows;
+
+	/**
+	 * @param memory
+	 *            bytes of heap the buffered rows may take before they are
+	 *            sorted to disk
+	 */
+	public SortedRowFile(boolean genes, long memory) {
+		this.genes = genes;
+		rows = new SpillingStringSet(Integer.MAX_VALUE,
+				SpillingStringSet.maxChars(memory));
+	}
+
+	/**
+	 * Memory budget set with the <code>psimi.merge.memory</code> system
+	 * property, in megabytes, 64 by default.
+	 */
+	public static long defaultMemory() {
+		return Long.getLong("psimi.merge.memory", 64) << 20;
+	}
+
+	/**
+	 * @param row
+	 *            a row without line break
+	 */
+	public void add(String row) throws IOException {
+		rows.add(row);
+	}
+
+	/**
+	 * Writes the header, which may be empty, and the rows, and deletes the
+	 * spilled runs.
+	 */
+	public void write(File file, String header) throws IOException {
+		final Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			out.write(header);
+			if (!genes) {
+				rows.writeTo(out);
+				return;
+			}
+			/* the rows of a gene are sorted on pathway, the last is kept */
+			final String[] last = new String[1];
+			rows.merge(new SpillingStringSet.Lines() {
+				@Override
+				public void line(String row) throws IOException {
+					if (last[0] != null && !gene(row).equals(gene(last[0]))) {
+						out.write(last[0]);
+						out.write('\n');
+					}
+					last[0] = row;
+				}
+			});
+			if (last[0] != null) {
+				out.write(last[0]);
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String gene(String row) {
+		int tab = row.indexOf('\t');
+		return tab < 0 ? row : row.substring(0, tab);
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperStack;
+
+/**
+ * Sends the lookups of a pathway to the bridge databases of its organism
+ * only, so a gene product can not be mapped with the database of another
+ * species. Bridge files are assigned to a species by the BridgeDb prefix of
+ * their name, e.g. <code>Hs_Derby_Ensembl_80.bridge</code>; files without
+ * one, such as the metabolite database, are queried for every species.
+ * Pathways of an organism without databases use the stack of all files.
+ * <p>
+ * Every route has a cache of its own. Queries are serialized per bridge
+ * database only, so routes wait for each other on the databases they share.
+ *
+ * @author anwesha
+ *
+ */
+public class SpeciesRouting {
+
+	private final MappingCache fallback;
+	/* bridge code -> cache in front of the species and shared databases */
+	private final Map<String, MappingCache> routes = new LinkedHashMap<String, MappingCache>();
+
+	/**
+	 * @param fallback
+	 *            cache in front of all databases
+	 * @param gdbs
+	 *            the opened databases by bridge file
+	 */
+	public SpeciesRouting(MappingCache fallback, Map<File, IDMapper> gdbs,
+			MappingSnapshot snapshot,
+			MappingSnapshot.Builder recorder) {
+		this.fallback = fallback;
+		Map<String, List<IDMapper>> species = new LinkedHashMap<String, List<IDMapper>>();
+		List<IDMapper> shared = new ArrayList<IDMapper>();
+		for (Map.Entry<File, IDMapper> gdb : gdbs.entrySet()) {
+			String code = speciesOf(gdb.getKey());
+			if (code == null) {
+				shared.add(gdb.getValue());
+			} else {
+				List<IDMapper> list = species.get(code);
+				if (list == null) {
+					list = new ArrayList<IDMapper>();
+					species.put(code, list);
+				}
+				list.add(gdb.getValue());
+			}
+		}
+		for (Map.Entry<String, List<IDMapper>> entry : species.entrySet()) {
+			IDMapperStack stack = new IDMapperStack();
+			for (IDMapper gdb : entry.getValue()) {
+				stack.addIDMapper(gdb);
+			}
+			for (IDMapper gdb : shared) {
+				stack.addIDMapper(gdb);
+			}
+			routes.put(entry.getKey(), new MappingCache(stack,
+					MappingCache.defaultSize(), snapshot, recorder,
+					entry.getKey()));
+		}
+	}
+
+	/**
+	 * Routing is on unless the <code>psimi.routing</code> system property is
+	 * "false".
+	 */
+	public static boolean defaultEnabled() {
+		return !"false".equals(System.getProperty("psimi.routing"));
+	}
+
+	/**
+	 * @return the species prefix of the bridge file, or null if it has none
+	 */
+	public static String speciesOf(File bridgeFile) {
+		String name = bridgeFile.getName();
+		int end = name.indexOf('_');
+		if (end < 0) {
+			return null;
+		}
+		String code = name.substring(0, end);
+		return Organisms.isBridgeCode(code) ? code : null;
+	}
+
+	/**
+	 * @return the cache for the organism of a pathway
+	 */
+	public MappingCache forOrganism(String organism) {
+		String code = Organisms.bridgeCode(organism);
+		MappingCache route = code == null ? null : routes.get(code);
+		return route == null ? fallback : route;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("all: ").append(fallback);
+		for (Map.Entry<String, MappingCache> route : routes.entrySet()) {
+			sb.append('\n').append(route.getKey()).append(": ")
+			.append(route.getValue());
+		}
+		return sb.toString();
+	}
+}
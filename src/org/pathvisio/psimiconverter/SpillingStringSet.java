@@ -0,0 +1,225 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Set of strings that are written out sorted and without duplicates. Up to
+ * a threshold they are kept in a {@link StringDictionary}; past it the
+ * strings in memory are sorted into a run file and memory is cleared, so
+ * the heap it takes does not grow with the input. {@link #writeTo(Writer)}
+ * merges the runs.
+ * <p>
+ * Strings must not contain line breaks. Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class SpillingStringSet {
+
+	/*
+	 * Heap taken per buffered character: the dictionary holds it in a char
+	 * array that grows by doubling, up to 4 bytes, and sorting a run decodes
+	 * it into a String once more, 2 bytes. The per-string overhead is small
+	 * next to rows of several hundred characters.
+	 */
+	private static final int BYTES_PER_CHAR = 6;
+
+	private final int maxInMemory;
+	private final int maxChars;
+	private StringDictionary inMemory = new StringDictionary();
+	private final List<File> runs = new ArrayList<File>();
+
+	/**
+	 * @param maxInMemory
+	 *            number of strings kept before they are spilled to disk
+	 */
+	public SpillingStringSet(int maxInMemory) {
+		this(maxInMemory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxInMemory
+	 *            number of strings kept before they are spilled to disk
+	 * @param maxChars
+	 *            number of characters kept before they are spilled to disk
+	 */
+	public SpillingStringSet(int maxInMemory, int maxChars) {
+		this.maxInMemory = Math.max(1, maxInMemory);
+		this.maxChars = Math.max(1, maxChars);
+	}
+
+	/**
+	 * Number of strings kept in memory, set with the
+	 * <code>psimi.spill.size</code> system property.
+	 */
+	public static int defaultSize() {
+		return Integer.getInteger("psimi.spill.size", 1000000);
+	}
+
+	/**
+	 * @return the number of characters to keep in memory for a budget of
+	 *         heap bytes, see {@link #SpillingStringSet(int, int)}
+	 */
+	public static int maxChars(long memory) {
+		return (int) Math.min(Integer.MAX_VALUE, memory / BYTES_PER_CHAR);
+	}
+
+	public void add(String s) throws IOException {
+		inMemory.encode(s);
+		if (inMemory.size() >= maxInMemory || inMemory.length() >= maxChars) {
+			spill();
+		}
+	}
+
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	private String[] sortedInMemory() {
+		String[] sorted = new String[inMemory.size()];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = inMemory.decode(i);
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private void spill() throws IOException {
+		File run = File.createTempFile("psimi-run", ".txt");
+		run.deleteOnExit();
+		runs.add(run);
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(run), "UTF-8"));
+		try {
+			for (String s : sortedInMemory()) {
+				out.write(s);
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+		inMemory = new StringDictionary();
+	}
+
+	/**
+	 * A sorted run and its current line.
+	 */
+	private static class Run implements Comparable<Run> {
+		final BufferedReader in;
+		String line;
+
+		Run(BufferedReader in) throws IOException {
+			this.in = in;
+			this.line = in.readLine();
+		}
+
+		@Override
+		public int compareTo(Run o) {
+			return line.compareTo(o.line);
+		}
+	}
+
+	/**
+	 * Receives the strings of {@link SpillingStringSet#merge(Lines)}.
+	 */
+	interface Lines {
+		void line(String s) throws IOException;
+	}
+
+	/**
+	 * Writes the strings in sorted order, one per line, and deletes the run
+	 * files.
+	 */
+	public void writeTo(final Writer out) throws IOException {
+		merge(new Lines() {
+			@Override
+			public void line(String s) throws IOException {
+				out.write(s);
+				out.write('\n');
+			}
+		});
+	}
+
+	/**
+	 * Passes the strings on in sorted order and deletes the run files.
+	 */
+	void merge(Lines handler) throws IOException {
+		if (runs.isEmpty()) {
+			for (String s : sortedInMemory()) {
+				handler.line(s);
+			}
+			inMemory = new StringDictionary();
+			return;
+		}
+		spill();
+		PriorityQueue<Run> queue = new PriorityQueue<Run>();
+		List<BufferedReader> readers = new ArrayList<BufferedReader>();
+		try {
+			for (File file : runs) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						new FileInputStream(file), "UTF-8"));
+				readers.add(in);
+				Run run = new Run(in);
+				if (run.line != null) {
+					queue.add(run);
+				}
+			}
+			String last = null;
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				if (!run.line.equals(last)) {
+					handler.line(run.line);
+					last = run.line;
+				}
+				run.line = run.in.readLine();
+				if (run.line != null) {
+					queue.add(run);
+				}
+			}
+		} finally {
+			for (BufferedReader in : readers) {
+				in.close();
+			}
+			delete();
+		}
+	}
+
+	/**
+	 * Deletes the run files.
+	 */
+	public void delete() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		inMemory = new StringDictionary();
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Assigns dense int codes, 0, 1, 2..., to strings in the order they are
+ * first seen. The characters of all strings are kept in one array and the
+ * index is an open addressing table of ints, so an entry costs a few bytes
+ * more than its characters instead of a String and a map entry.
+ * <p>
+ * Not thread safe.
+ *
+ * @author anwesha
+ *
+ */
+public class StringDictionary {
+
+	/* the largest array most VMs allocate */
+	private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+	private char[] chars = new char[1024];
+	private int length;
+	/* code -> start of the string in chars, the end is the next start */
+	private int[] starts = new int[65];
+	private int[] hashes = new int[64];
+	private int size;
+	/* code + 1 of the string in every slot, 0 for free slots */
+	private int[] table = new int[128];
+
+	/**
+	 * @return the code of the string, added if it is new
+	 */
+	public int encode(String s) {
+		int hash = s.hashCode();
+		int slot = slot(s, hash);
+		if (table[slot] != 0) {
+			return table[slot] - 1;
+		}
+		int code = size;
+		if (code == hashes.length) {
+			starts = Arrays.copyOf(starts, capacity(starts.length,
+					starts.length + 1L));
+			hashes = Arrays.copyOf(hashes, starts.length - 1);
+		}
+		long needed = (long) length + s.length();
+		if (needed > chars.length) {
+			chars = Arrays.copyOf(chars, capacity(chars.length, needed));
+		}
+		s.getChars(0, s.length(), chars, length);
+		length += s.length();
+		starts[code + 1] = length;
+		hashes[code] = hash;
+		table[slot] = code + 1;
+		size++;
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return code;
+	}
+
+	/**
+	 * @return the code of the string, or -1 if it was never encoded
+	 */
+	public int find(String s) {
+		return table[slot(s, s.hashCode())] - 1;
+	}
+
+	public String decode(int code) {
+		return new String(chars, starts[code], starts[code + 1]
+				- starts[code]);
+	}
+
+	/**
+	 * Writes the string of the code without creating it.
+	 */
+	public void write(int code, Writer out) throws IOException {
+		out.write(chars, starts[code], starts[code + 1] - starts[code]);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of characters of all strings
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the slot that holds the string, or the free slot it goes to
+	 */
+	private int slot(String s, int hash) {
+		int mask = table.length - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int code = table[slot] - 1;
+			if (code < 0 || hashes[code] == hash && matches(code, s)) {
+				return slot;
+			}
+		}
+	}
+
+	private boolean matches(int code, String s) {
+		int start = starts[code];
+		if (starts[code + 1] - start != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (chars[start + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the doubled length of an array that must hold at least
+	 *         <code>needed</code> elements
+	 * @throws IllegalStateException
+	 *             if that is more than an array can hold
+	 */
+	private static int capacity(int length, long needed) {
+		if (needed > MAX_ARRAY) {
+			throw new IllegalStateException(
+					"String dictionary is larger than an array can hold");
+		}
+		return (int) Math.min(MAX_ARRAY, Math.max(2L * length, needed));
+	}
+
+	private void rehash() {
+		if (table.length > MAX_ARRAY / 2) {
+			throw new IllegalStateException(
+					"String dictionary has more strings than it can index");
+		}
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for (int code = 0; code < size; code++) {
+			int slot = mix(hashes[code]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = code + 1;
+		}
+	}
+
+	/* spreads the String hash codes, which differ little in the low bits */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
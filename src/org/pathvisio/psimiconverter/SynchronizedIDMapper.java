@@ -0,0 +1,82 @@
+/**
+ * Copyright 2014 BiGCaT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pathvisio.psimiconverter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * A bridge database that answers one query at a time. A Derby backed
+ * database has a single JDBC connection, so its queries have to be
+ * serialized; queries on different bridge files still run in parallel.
+ *
+ * @author anwesha
+ *
+ */
+public class SynchronizedIDMapper implements IDMapper {
+
+	private final IDMapper gdb;
+
+	public SynchronizedIDMapper(IDMapper gdb) {
+		this.gdb = gdb;
+	}
+
+	@Override
+	public synchronized Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs,
+			DataSource... tgtDataSources) throws IDMapperException {
+		return gdb.mapID(srcXrefs, tgtDataSources);
+	}
+
+	@Override
+	public synchronized Set<Xref> mapID(Xref ref, DataSource... tgtDataSources)
+			throws IDMapperException {
+		return gdb.mapID(ref, tgtDataSources);
+	}
+
+	@Override
+	public synchronized boolean xrefExists(Xref xref) throws IDMapperException {
+		return gdb.xrefExists(xref);
+	}
+
+	@Override
+	public synchronized Set<Xref> freeSearch(String text, int limit)
+			throws IDMapperException {
+		return gdb.freeSearch(text, limit);
+	}
+
+	@Override
+	public synchronized IDMapperCapabilities getCapabilities() {
+		return gdb.getCapabilities();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return gdb.isConnected();
+	}
+
+	@Override
+	public synchronized void close() throws IDMapperException {
+		gdb.close();
+	}
+}